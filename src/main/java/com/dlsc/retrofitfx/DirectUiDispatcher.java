@@ -0,0 +1,22 @@
+package com.dlsc.retrofitfx;
+
+/**
+ * A dispatcher that runs everything on the calling thread.
+ */
+final class DirectUiDispatcher implements UiDispatcher {
+
+    static final DirectUiDispatcher INSTANCE = new DirectUiDispatcher();
+
+    private DirectUiDispatcher() {
+    }
+
+    @Override
+    public void dispatch(Runnable runnable) {
+        runnable.run();
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.ResponseBody;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the body of a download response directly into a file. The data gets written into a
+ * temporary ".part" file next to the target, which will be renamed to the target once the
+ * download is complete. An existing ".part" file from an earlier attempt gets resumed via an
+ * HTTP range request if the server supports it (status code 206).
+ */
+final class FileDownload {
+
+    private static final Logger LOG = LogManager.getLogger(FileDownload.class);
+
+    /*
+     * The number of bytes transferred between two progress updates.
+     */
+    private static final long CHUNK_SIZE = 256 * 1024;
+
+    private FileDownload() {
+    }
+
+    static Response<Path> transfer(ServiceInvocation<Path> invocation, ServiceInvocation.DownloadSupplier supplier, Path target) throws Exception {
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+
+        long existing = Files.exists(part) ? Files.size(part) : 0;
+        String range = existing > 0 ? "bytes=" + existing + "-" : null;
+
+        if (range != null) {
+            LOG.debug("resuming download of {} at byte {}", target, existing);
+        }
+
+        Response<ResponseBody> response = supplier.get(range);
+        if (!response.isSuccessful()) {
+            if (response.code() == HttpStatusCode.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+                // the partial file does not match the resource anymore, start from scratch next time
+                Files.deleteIfExists(part);
+            }
+            return Response.error(response.errorBody(), response.raw());
+        }
+
+        try (ResponseBody body = response.body()) {
+            if (body == null) {
+                throw new IOException("download response has no body");
+            }
+
+            boolean resume = existing > 0 && response.code() == HttpStatusCode.PARTIAL_CONTENT.getStatusCode();
+            if (resume) {
+                checkContentRange(response.headers().get("Content-Range"), existing);
+            }
+
+            long position = resume ? existing : 0;
+            long length = body.contentLength();
+            long total = length >= 0 ? position + length : -1;
+
+            invocation.updateProgress(position, total);
+
+            try (FileChannel channel = resume
+                    ? FileChannel.open(part, StandardOpenOption.WRITE)
+                    : FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 ReadableByteChannel source = Channels.newChannel(body.byteStream())) {
+
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, CHUNK_SIZE)) > 0) {
+                    position += transferred;
+                    invocation.updateProgress(position, total);
+                    if (invocation.isCancelled()) {
+                        // keep the partial file so that the download can be resumed later on
+                        return Response.success(null, response.raw());
+                    }
+                }
+
+                channel.force(true);
+            }
+
+            if (total >= 0 && position != total) {
+                throw new IOException("download incomplete, received " + position + " of " + total + " bytes");
+            }
+        }
+
+        move(part, target);
+
+        return Response.success(target, response.raw());
+    }
+
+    private static void checkContentRange(String contentRange, long expectedStart) throws IOException {
+        if (contentRange == null) {
+            return;
+        }
+
+        // format: "bytes 1000-4999/5000"
+        String value = contentRange.trim();
+        int space = value.indexOf(' ');
+        int dash = value.indexOf('-');
+        if (space < 0 || dash < space) {
+            throw new IOException("invalid Content-Range header: " + contentRange);
+        }
+
+        long start = Long.parseLong(value.substring(space + 1, dash).trim());
+        if (start != expectedStart) {
+            throw new IOException("server resumed download at byte " + start + " instead of " + expectedStart);
+        }
+    }
+
+    private static void move(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            LOG.debug("atomic move not supported, moving {} to {} non-atomically", part, target);
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.dlsc.retrofitfx;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long the runnables posted by RetrofitFX (see {@link UiDispatcher}) have to wait
+ * in the queue of the JavaFX application thread before they get executed. Every runnable gets
+ * timestamped when it is posted and the measured queue latency is tracked as a moving average.
+ * Once the latency exceeds the saturation threshold the service invocations apply backpressure:
+ * workers wait a little before calling the backend, and cosmetic updates (e.g. of the message
+ * property) are skipped so that the results and completion handlers reach the UI thread sooner.
+ * <p>
+ * Only the JavaFX dispatcher gets measured and throttled. The other dispatchers (e.g. a
+ * {@link ManualUiDispatcher} used by tests) run their work whenever their owner decides to and
+ * never count as saturated.
+ * <p>
+ * All methods of this class can be called on any thread.
+ */
+public final class FxQueueMonitor {
+
+    private static final Logger LOG = LogManager.getLogger(FxQueueMonitor.class);
+
+    /**
+     * The default latency threshold in milliseconds above which the UI thread is considered saturated.
+     */
+    public static final long DEFAULT_SATURATION_THRESHOLD = 100;
+
+    /**
+     * The default maximum time in milliseconds that a worker waits for the UI thread before calling the backend.
+     */
+    public static final long DEFAULT_MAX_THROTTLE_DELAY = 2_000;
+
+    private static final long THROTTLE_STEP_MILLIS = 10;
+
+    // the moving average gets halved for every period without new samples
+    private static final long DECAY_HALF_LIFE = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final AtomicLong averageLatency = new AtomicLong();
+    private static final AtomicLong maxLatency = new AtomicLong();
+    private static final AtomicLong lastRun = new AtomicLong(System.nanoTime());
+    private static final AtomicLong pendingSince = new AtomicLong();
+    private static final AtomicInteger pending = new AtomicInteger();
+
+    private static volatile long saturationThreshold = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SATURATION_THRESHOLD);
+    private static volatile long maxThrottleDelay = DEFAULT_MAX_THROTTLE_DELAY;
+
+    private FxQueueMonitor() {
+    }
+
+    /**
+     * Posts the given runnable to the UI thread of the given dispatcher and measures how long
+     * it had to wait in the queue if the dispatcher is the JavaFX dispatcher.
+     *
+     * @param dispatcher the dispatcher used for posting the runnable
+     * @param runnable   the runnable to execute on the UI thread
+     */
+    static void runLater(UiDispatcher dispatcher, Runnable runnable) {
+        if (dispatcher != FxUiDispatcher.INSTANCE) {
+            dispatcher.dispatch(runnable);
+            return;
+        }
+
+        long posted = System.nanoTime();
+        if (pending.getAndIncrement() == 0) {
+            pendingSince.set(posted);
+        }
+
+        dispatcher.dispatch(() -> {
+            long now = System.nanoTime();
+            record(now - posted);
+            lastRun.set(now);
+            pending.decrementAndGet();
+            runnable.run();
+        });
+    }
+
+    private static void record(long latency) {
+        // exponentially weighted moving average with a weight of 1/8 for the newest sample
+        averageLatency.accumulateAndGet(latency, (average, sample) -> average + (sample - average) / 8);
+        maxLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Returns the current queue latency of the UI thread in milliseconds. This is the moving
+     * average of the measured latencies, or the time the UI thread has been stalled if it
+     * did not run any of the pending runnables for a longer period. The average decays while
+     * no runnables get executed and the latency is zero while no runnables are pending.
+     *
+     * @return the latency in milliseconds
+     */
+    public static long getLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(currentLatency());
+    }
+
+    /**
+     * Returns the highest queue latency measured so far in milliseconds.
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public static long getMaxLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+    }
+
+    /**
+     * Returns the number of runnables posted by RetrofitFX that are still waiting in the queue of the UI thread.
+     *
+     * @return the number of pending runnables
+     */
+    public static int getPendingCount() {
+        return Math.max(0, pending.get());
+    }
+
+    /**
+     * Returns true if the queue latency of the UI thread is above the saturation threshold.
+     *
+     * @return true if the UI thread is saturated
+     */
+    public static boolean isSaturated() {
+        return currentLatency() > saturationThreshold;
+    }
+
+    /**
+     * Sets the latency threshold above which the UI thread is considered saturated.
+     *
+     * @param millis the threshold in milliseconds
+     */
+    public static void setSaturationThreshold(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("saturation threshold millis can not be negative but was " + millis);
+        }
+        saturationThreshold = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Returns the latency threshold above which the UI thread is considered saturated.
+     *
+     * @return the threshold in milliseconds
+     */
+    public static long getSaturationThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(saturationThreshold);
+    }
+
+    /**
+     * Sets the maximum time a worker will wait for a saturated UI thread before calling
+     * the backend anyway. A value of zero disables the throttling of new calls.
+     *
+     * @param millis the maximum delay in milliseconds
+     */
+    public static void setMaxThrottleDelay(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("max throttle delay millis can not be negative but was " + millis);
+        }
+        maxThrottleDelay = millis;
+    }
+
+    /**
+     * Returns the maximum time a worker will wait for a saturated UI thread before calling the backend.
+     *
+     * @return the maximum delay in milliseconds
+     */
+    public static long getMaxThrottleDelay() {
+        return maxThrottleDelay;
+    }
+
+    /*
+     * Returns true if the given dispatcher is the JavaFX dispatcher and the JavaFX application
+     * thread is saturated.
+     */
+    static boolean isSaturated(UiDispatcher dispatcher) {
+        return dispatcher == FxUiDispatcher.INSTANCE && isSaturated();
+    }
+
+    /**
+     * Blocks the calling worker thread while the UI thread of the given dispatcher is saturated,
+     * but not longer than the maximum throttle delay.
+     *
+     * @param dispatcher the dispatcher of the invocation
+     * @return the time spent waiting in milliseconds
+     * @throws InterruptedException if the worker thread gets interrupted while waiting
+     */
+    static long awaitCapacity(UiDispatcher dispatcher) throws InterruptedException {
+        long waited = 0;
+        while (waited < maxThrottleDelay && isSaturated(dispatcher)) {
+            Thread.sleep(THROTTLE_STEP_MILLIS);
+            waited += THROTTLE_STEP_MILLIS;
+        }
+
+        if (waited > 0) {
+            LOG.debug("UI thread saturated, delayed service call by {}ms", waited);
+        }
+
+        return waited;
+    }
+
+    private static long currentLatency() {
+        if (pending.get() <= 0) {
+            // nothing is waiting, the UI thread keeps up
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        long last = lastRun.get();
+
+        long halvings = (now - last) / DECAY_HALF_LIFE;
+        long latency = halvings >= 63 ? 0 : averageLatency.get() >> halvings;
+
+        long stalled = now - Math.max(last, pendingSince.get());
+        return Math.max(latency, stalled);
+    }
+}
@@ -0,0 +1,24 @@
+package com.dlsc.retrofitfx;
+
+import javafx.application.Platform;
+
+/**
+ * A dispatcher using the JavaFX application thread.
+ */
+final class FxUiDispatcher implements UiDispatcher {
+
+    static final FxUiDispatcher INSTANCE = new FxUiDispatcher();
+
+    private FxUiDispatcher() {
+    }
+
+    @Override
+    public void dispatch(Runnable runnable) {
+        Platform.runLater(runnable);
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Platform.isFxApplicationThread();
+    }
+}
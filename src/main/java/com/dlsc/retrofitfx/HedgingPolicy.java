@@ -0,0 +1,176 @@
+package com.dlsc.retrofitfx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Configures hedged requests for idempotent service invocations. When the backend has not
+ * answered within the given percentile of the recent latencies of invocations with the same
+ * name, then a second, identical request gets sent. The first response wins and the other
+ * request gets cancelled.
+ * <p>
+ * Hedging puts additional load on the backend, hence it is capped by a global budget: only a
+ * certain ratio of all hedged invocations may send a second request (10% by default). If the
+ * invocation has a rate limiter, then the second request also needs a permit of it and is not
+ * sent if none is available right away.
+ * <pre>
+ *         ServiceInvocation.create("Load customers ...", () -> myService.getAllCustomers().execute())
+ *              .withHedging(HedgingPolicy.create().withPercentile(0.95))
+ *              .execute();
+ *     </pre>
+ * Only use hedging for idempotent calls, e.g. reading data. The service supplier will be invoked twice.
+ */
+public final class HedgingPolicy {
+
+    /**
+     * The default percentile of the recent latency after which a second request gets sent.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+
+    /**
+     * The default minimum number of recorded latencies before hedging kicks in.
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+
+    private static final long TOKEN = 1_000;
+
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private static final AtomicLong budgetTokens = new AtomicLong(MAX_TOKENS);
+
+    private static volatile long budgetRatio = 100;
+
+    private double percentile = DEFAULT_PERCENTILE;
+
+    private int minSamples = DEFAULT_MIN_SAMPLES;
+
+    private long minDelay;
+
+    private String key;
+
+    private HedgingPolicy() {
+    }
+
+    /**
+     * Creates a new policy with the default values.
+     *
+     * @return the policy
+     */
+    public static HedgingPolicy create() {
+        return new HedgingPolicy();
+    }
+
+    /**
+     * Sets the percentile of the recent latency after which a second request gets sent.
+     *
+     * @param percentile the percentile between 0 and 1, e.g. 0.95
+     * @return the policy
+     */
+    public HedgingPolicy withPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1 (exclusive) but was " + percentile);
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Sets the number of latencies that need to be recorded before hedging kicks in.
+     *
+     * @param minSamples the minimum number of samples
+     * @return the policy
+     */
+    public HedgingPolicy withMinSamples(int minSamples) {
+        if (minSamples < 1) {
+            throw new IllegalArgumentException("min samples must be at least 1 but was " + minSamples);
+        }
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Sets the minimum time to wait for the first request before sending the second one.
+     *
+     * @param millis the minimum delay in milliseconds
+     * @return the policy
+     */
+    public HedgingPolicy withMinDelay(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("min delay millis can not be negative but was " + millis);
+        }
+        this.minDelay = millis;
+        return this;
+    }
+
+    /**
+     * Sets the key under which the latencies of the invocations using this policy are tracked.
+     * By default, the latencies are tracked per invocation name. Set a common key if the names
+     * contain varying parts, e.g. "Load customer 4711".
+     *
+     * @param key the key or null to use the name of the invocation
+     * @return the policy
+     */
+    public HedgingPolicy withKey(String key) {
+        this.key = key;
+        return this;
+    }
+
+    /**
+     * Returns the key under which the latencies are tracked.
+     *
+     * @return the key or null if the name of the invocation is used
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Sets the global budget for hedged requests, i.e. the maximum ratio of extra requests
+     * compared to the number of invocations using hedging.
+     *
+     * @param ratio the ratio between 0 and 1, e.g. 0.1 for at most 10% extra requests
+     */
+    public static void setBudget(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("budget ratio must be between 0 and 1 but was " + ratio);
+        }
+        budgetRatio = Math.round(ratio * TOKEN);
+    }
+
+    /**
+     * Returns the global budget for hedged requests.
+     *
+     * @return the maximum ratio of extra requests
+     */
+    public static double getBudget() {
+        return (double) budgetRatio / TOKEN;
+    }
+
+    /*
+     * Returns the time to wait before hedging, or -1 if there is not enough data yet.
+     */
+    long getHedgeDelay(LatencyTracker tracker) {
+        if (tracker.getSampleCount() < minSamples) {
+            return -1;
+        }
+        return Math.max(minDelay, tracker.percentile(percentile));
+    }
+
+    /*
+     * Every invocation using hedging earns a fraction of a token, each hedged request spends a whole one.
+     */
+    static void earnBudget() {
+        long ratio = budgetRatio;
+        budgetTokens.accumulateAndGet(ratio, (tokens, earned) -> Math.min(MAX_TOKENS, tokens + earned));
+    }
+
+    static boolean trySpendBudget() {
+        long tokens;
+        do {
+            tokens = budgetTokens.get();
+            if (tokens < TOKEN) {
+                return false;
+            }
+        } while (!budgetTokens.compareAndSet(tokens, tokens - TOKEN));
+        return true;
+    }
+}
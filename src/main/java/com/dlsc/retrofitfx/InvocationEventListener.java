@@ -0,0 +1,176 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * An OkHttp event listener that measures the network phases (DNS, connect, TLS, time to first
+ * byte, body transfer) and the payload sizes of the HTTP calls made by service invocations. The
+ * results are available per invocation via {@link ServiceInvocation#getNetworkTimings()} and
+ * aggregated per invocation name via {@link NetworkStatistics}. Calls made outside of a service
+ * invocation are ignored.
+ * <pre>
+ *         OkHttpClient client = new OkHttpClient.Builder()
+ *              .eventListenerFactory(InvocationEventListener.factory())
+ *              .build();
+ *
+ *         Retrofit retrofit = new Retrofit.Builder()
+ *              .baseUrl("https://api.domain.com/")
+ *              .client(client)
+ *              .build();
+ *     </pre>
+ * The listener links calls to invocations via the worker thread, hence the Retrofit calls have
+ * to be made synchronously (via "execute()") inside the service supplier.
+ */
+public final class InvocationEventListener extends EventListener {
+
+    private static final EventListener.Factory FACTORY = call -> {
+        ServiceInvocation<?> invocation = ServiceInvocation.current();
+        if (invocation == null) {
+            return EventListener.NONE;
+        }
+        return new InvocationEventListener(invocation.getNetworkTimings(), NetworkStatistics.forName(invocation.getName()));
+    };
+
+    private final NetworkTimings invocationTimings;
+
+    private final NetworkTimings nameTimings;
+
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long responseBodyStart;
+
+    private InvocationEventListener(NetworkTimings invocationTimings, NetworkTimings nameTimings) {
+        this.invocationTimings = invocationTimings;
+        this.nameTimings = nameTimings;
+    }
+
+    /**
+     * Returns the factory that needs to be registered with the OkHttp client.
+     *
+     * @return the event listener factory
+     */
+    public static EventListener.Factory factory() {
+        return FACTORY;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        long nanos = System.nanoTime() - dnsStart;
+        invocationTimings.addDns(nanos);
+        nameTimings.addDns(nanos);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        long nanos = System.nanoTime() - secureConnectStart;
+        invocationTimings.addTls(nanos);
+        nameTimings.addTls(nanos);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        long nanos = System.nanoTime() - connectStart;
+        invocationTimings.addConnect(nanos);
+        nameTimings.addConnect(nanos);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol, IOException ioe) {
+        // OkHttp might still connect via another route, the failed attempt is only counted
+        invocationTimings.addFailedConnect();
+        nameTimings.addFailedConnect();
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        long bytes = request.headers().byteCount();
+        invocationTimings.addBytesSent(bytes);
+        nameTimings.addBytesSent(bytes);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        invocationTimings.addBytesSent(byteCount);
+        nameTimings.addBytesSent(byteCount);
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        long nanos = System.nanoTime() - requestStart;
+        invocationTimings.addTimeToFirstByte(nanos);
+        nameTimings.addTimeToFirstByte(nanos);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, okhttp3.Response response) {
+        long bytes = response.headers().byteCount();
+        invocationTimings.addBytesReceived(bytes);
+        nameTimings.addBytesReceived(bytes);
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        responseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        long nanos = System.nanoTime() - responseBodyStart;
+        invocationTimings.addBody(nanos);
+        nameTimings.addBody(nanos);
+        invocationTimings.addBytesReceived(byteCount);
+        nameTimings.addBytesReceived(byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        long nanos = System.nanoTime() - callStart;
+        invocationTimings.addCall(nanos, false);
+        nameTimings.addCall(nanos, false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        long nanos = System.nanoTime() - callStart;
+        invocationTimings.addCall(nanos, true);
+        nameTimings.addCall(nanos, true);
+    }
+}
@@ -0,0 +1,434 @@
+package com.dlsc.retrofitfx;
+
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.concurrent.Worker;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A worker representing a group of service invocations, e.g. all invocations started by a
+ * screen of the application. The group keeps track of its members with lock-free counters on
+ * the worker threads and publishes the aggregated values (state, progress, message, ...) to
+ * the UI thread at a bounded rate. This way a status bar can bind to a single worker instead
+ * of listening to every individual invocation.
+ * <pre>
+ *         InvocationGroup group = InvocationGroup.create("Dashboard");
+ *         statusBar.progressProperty().bind(group.progressProperty());
+ *
+ *         ui.execute(group.add(ServiceInvocation.create("Load news ...", () -> myService.loadNews().execute())));
+ *         ui.execute(group.add(ServiceInvocation.create("Load mails ...", () -> myService.loadMails().execute())));
+ *     </pre>
+ * Invocations have to be added to the group before they get executed. Only invocations that
+ * actually get executed are counted, added invocations that are never executed (e.g. the steps
+ * of a pipeline created via {@code thenInvoke} or {@code thenCombine}, which run as part of
+ * their pipeline) do not keep the group running. They still get the group's simulation profile
+ * and rate limiter and get cancelled together with the group.
+ */
+public final class InvocationGroup implements Worker<Void> {
+
+    /**
+     * The default minimum time in milliseconds between two updates of the group's properties.
+     */
+    public static final long DEFAULT_UPDATE_INTERVAL = 100;
+
+    private final String name;
+
+    // the added invocations that have not finished yet, finished ones are only reflected by the counters
+    private final Set<ServiceInvocation<?>> invocations = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final Set<ServiceInvocation<?>> running = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger cancelledCount = new AtomicInteger();
+    private final AtomicReference<Throwable> firstException = new AtomicReference<>();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private volatile SimulationProfile simulationProfile;
+
+    private volatile RateLimiter rateLimiter;
+
+    private final Throttle throttle = new Throttle(DEFAULT_UPDATE_INTERVAL, this::publish);
+
+    private final InvocationListener listener = new InvocationListener() {
+
+        @Override
+        public void scheduled(ServiceInvocation<?> invocation) {
+            total.incrementAndGet();
+            throttle.request();
+        }
+
+        @Override
+        public void started(ServiceInvocation<?> invocation) {
+            running.add(invocation);
+            throttle.request();
+        }
+
+        @Override
+        public void finished(ServiceInvocation<?> invocation, State outcome, Throwable exception) {
+            running.remove(invocation);
+
+            // do not retain finished invocations (and their handlers and results)
+            invocations.remove(invocation);
+            invocation.removeListener(this);
+
+            switch (outcome) {
+                case SUCCEEDED -> succeeded.incrementAndGet();
+                case CANCELLED -> cancelledCount.incrementAndGet();
+                default -> {
+                    failed.incrementAndGet();
+                    if (exception != null) {
+                        firstException.compareAndSet(null, exception);
+                    }
+                }
+            }
+
+            throttle.request();
+        }
+    };
+
+    private InvocationGroup(String name) {
+        this.name = Objects.requireNonNull(name, "group name can not be null");
+        title.set(name);
+    }
+
+    /**
+     * Creates a new, empty invocation group.
+     *
+     * @param name the name of the group
+     * @return the group
+     */
+    public static InvocationGroup create(String name) {
+        return new InvocationGroup(name);
+    }
+
+    /**
+     * Returns the name of the group.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds the given invocation to the group. The invocation must not have been executed yet.
+     *
+     * @param invocation the invocation to add
+     * @param <T>        the type of the result object of the invocation
+     * @return the invocation (for chaining)
+     */
+    public <T> ServiceInvocation<T> add(ServiceInvocation<T> invocation) {
+        Objects.requireNonNull(invocation, "invocation can not be null");
+
+        invocations.add(invocation);
+        invocation.addListener(listener);
+
+        SimulationProfile profile = simulationProfile;
+        if (profile != null) {
+            invocation.applyGroupSimulationProfile(profile);
+        }
+
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            invocation.applyGroupRateLimiter(limiter);
+        }
+
+        if (cancelled.get()) {
+            invocation.cancel();
+        }
+
+        throttle.request();
+        return invocation;
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of the invocations of the group that have not finished
+     * yet. The group does not keep any references to finished invocations, they are only
+     * reflected by the counters.
+     *
+     * @return the unfinished invocations
+     */
+    public List<ServiceInvocation<?>> getInvocations() {
+        return List.copyOf(invocations);
+    }
+
+    /**
+     * Sets the minimum time between two updates of the group's properties on the UI thread.
+     *
+     * @param millis the interval in milliseconds
+     * @return the group
+     */
+    public InvocationGroup withUpdateInterval(long millis) {
+        throttle.setInterval(millis);
+        return this;
+    }
+
+    /**
+     * Sets the dispatcher used for updating the group's properties. By default the group uses
+     * the default dispatcher of the service invocations.
+     *
+     * @param dispatcher the dispatcher
+     * @return the group
+     * @see ServiceInvocation#setDefaultDispatcher(UiDispatcher)
+     */
+    public InvocationGroup withDispatcher(UiDispatcher dispatcher) {
+        throttle.setDispatcher(Objects.requireNonNull(dispatcher, "dispatcher can not be null"));
+        return this;
+    }
+
+    /**
+     * Sets the simulation profile for all invocations that get added to the group from now on,
+     * unless they have their own profile.
+     *
+     * @param profile the profile
+     * @return the group
+     */
+    public InvocationGroup withSimulationProfile(SimulationProfile profile) {
+        this.simulationProfile = profile;
+        return this;
+    }
+
+    /**
+     * Sets the rate limiter shared by all invocations that get added to the group from now on,
+     * unless they have their own rate limiter.
+     *
+     * @param rateLimiter the rate limiter
+     * @return the group
+     */
+    public InvocationGroup withRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Returns the number of invocations of the group that have been executed so far. Added
+     * invocations that have not been executed (yet) are not included. This method reads the
+     * counters directly and can be called on any thread.
+     *
+     * @return the number of executed invocations
+     */
+    public int getExecutedCount() {
+        return total.get();
+    }
+
+    /**
+     * Returns the number of invocations that have finished, no matter whether they succeeded, failed,
+     * or were cancelled. This method reads the counters directly and can be called on any thread.
+     *
+     * @return the number of finished invocations
+     */
+    public int getFinishedCount() {
+        return succeeded.get() + failed.get() + cancelledCount.get();
+    }
+
+    /**
+     * Returns the number of invocations that are currently running. This method reads the counters
+     * directly and can be called on any thread.
+     *
+     * @return the number of running invocations
+     */
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Returns the number of invocations that failed. This method reads the counters directly and
+     * can be called on any thread.
+     *
+     * @return the number of failed invocations
+     */
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /*
+     * Runs on the UI thread, at most once per update interval.
+     */
+    private void publish() {
+        int totalCount = total.get();
+        int finishedCount = getFinishedCount();
+        int runningCount = getRunningCount();
+
+        totalWork.set(totalCount);
+        workDone.set(finishedCount);
+        progress.set(totalCount == 0 ? 0 : (double) finishedCount / totalCount);
+        runningProperty.set(finishedCount < totalCount);
+        exception.set(firstException.get());
+
+        if (cancelled.get()) {
+            state.set(State.CANCELLED);
+        } else if (totalCount == 0) {
+            state.set(State.READY);
+        } else if (finishedCount < totalCount) {
+            state.set(runningCount > 0 || finishedCount > 0 ? State.RUNNING : State.SCHEDULED);
+        } else {
+            state.set(failed.get() > 0 ? State.FAILED : State.SUCCEEDED);
+        }
+
+        message.set(finishedCount + " of " + totalCount + " calls finished");
+    }
+
+    // state
+
+    private final ReadOnlyObjectWrapper<State> state = new ReadOnlyObjectWrapper<>(this, "state", State.READY);
+
+    @Override
+    public State getState() {
+        return state.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<State> stateProperty() {
+        return state.getReadOnlyProperty();
+    }
+
+    // value
+
+    private final ReadOnlyObjectWrapper<Void> value = new ReadOnlyObjectWrapper<>(this, "value");
+
+    @Override
+    public Void getValue() {
+        return value.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Void> valueProperty() {
+        return value.getReadOnlyProperty();
+    }
+
+    // exception
+
+    private final ReadOnlyObjectWrapper<Throwable> exception = new ReadOnlyObjectWrapper<>(this, "exception");
+
+    @Override
+    public Throwable getException() {
+        return exception.get();
+    }
+
+    @Override
+    public ReadOnlyObjectProperty<Throwable> exceptionProperty() {
+        return exception.getReadOnlyProperty();
+    }
+
+    // work done
+
+    private final ReadOnlyDoubleWrapper workDone = new ReadOnlyDoubleWrapper(this, "workDone");
+
+    @Override
+    public double getWorkDone() {
+        return workDone.get();
+    }
+
+    @Override
+    public ReadOnlyDoubleProperty workDoneProperty() {
+        return workDone.getReadOnlyProperty();
+    }
+
+    // total work
+
+    private final ReadOnlyDoubleWrapper totalWork = new ReadOnlyDoubleWrapper(this, "totalWork");
+
+    @Override
+    public double getTotalWork() {
+        return totalWork.get();
+    }
+
+    @Override
+    public ReadOnlyDoubleProperty totalWorkProperty() {
+        return totalWork.getReadOnlyProperty();
+    }
+
+    // progress
+
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(this, "progress");
+
+    @Override
+    public double getProgress() {
+        return progress.get();
+    }
+
+    @Override
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    // running
+
+    private final ReadOnlyBooleanWrapper runningProperty = new ReadOnlyBooleanWrapper(this, "running");
+
+    @Override
+    public boolean isRunning() {
+        return runningProperty.get();
+    }
+
+    @Override
+    public ReadOnlyBooleanProperty runningProperty() {
+        return runningProperty.getReadOnlyProperty();
+    }
+
+    // message
+
+    private final ReadOnlyStringWrapper message = new ReadOnlyStringWrapper(this, "message");
+
+    @Override
+    public String getMessage() {
+        return message.get();
+    }
+
+    @Override
+    public ReadOnlyStringProperty messageProperty() {
+        return message.getReadOnlyProperty();
+    }
+
+    // title
+
+    private final ReadOnlyStringWrapper title = new ReadOnlyStringWrapper(this, "title");
+
+    @Override
+    public String getTitle() {
+        return title.get();
+    }
+
+    @Override
+    public ReadOnlyStringProperty titleProperty() {
+        return title.getReadOnlyProperty();
+    }
+
+    // cancel
+
+    /**
+     * Cancels all invocations of the group, including the ones that will be added later on.
+     *
+     * @return always true
+     */
+    @Override
+    public boolean cancel() {
+        cancelled.set(true);
+        invocations.forEach(ServiceInvocation::cancel);
+        throttle.request();
+        return true;
+    }
+
+    /**
+     * Returns true if the group has been cancelled.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+}
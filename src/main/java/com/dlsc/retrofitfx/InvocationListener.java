@@ -0,0 +1,39 @@
+package com.dlsc.retrofitfx;
+
+import javafx.concurrent.Worker.State;
+
+/**
+ * A listener that gets informed about the lifecycle of a service invocation. In contrast to the
+ * handlers of a service invocation the listener methods get called directly on the worker thread,
+ * hence implementations must be thread-safe and should return quickly.
+ */
+interface InvocationListener {
+
+    /**
+     * Called on the calling thread when the invocation gets executed, before it is handed to its
+     * executor. Every call is followed by a call of {@link #finished}, pipeline steps are not
+     * executed on their own and never get reported.
+     *
+     * @param invocation the invocation
+     */
+    default void scheduled(ServiceInvocation<?> invocation) {
+    }
+
+    /**
+     * Called when the worker thread starts executing the invocation.
+     *
+     * @param invocation the invocation
+     */
+    default void started(ServiceInvocation<?> invocation) {
+    }
+
+    /**
+     * Called when the invocation is done, after all of its handlers have been called.
+     *
+     * @param invocation the invocation
+     * @param outcome    the final state (succeeded, failed, cancelled)
+     * @param exception  the exception that caused the failure, or null
+     */
+    default void finished(ServiceInvocation<?> invocation, State outcome, Throwable exception) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.dlsc.retrofitfx;
+
+import com.dlsc.retrofitfx.HttpStatusCode.Family;
+import javafx.concurrent.Worker.State;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The sink for the log entries written when service invocations finish. Each finished invocation
+ * produces at most one log entry containing its name, outcome, status code and duration. In order to
+ * keep the overhead low for applications performing thousands of invocations per minute the entries
+ * are sampled: the sample rate can be configured per outcome and, for invocations that received a
+ * response, per status code family. Failures are logged as warnings (error responses) or errors
+ * (exceptions), both are rate-limited and the number of suppressed entries gets reported with the
+ * next entry that passes.
+ * <pre>
+ *         InvocationLog.setSampleRate(State.SUCCEEDED, 0.001);
+ *         InvocationLog.setSampleRate(HttpStatusCode.Family.CLIENT_ERROR, 0.1); // expected 404s
+ *         InvocationLog.setMaxFailuresPerSecond(5);
+ *     </pre>
+ * In {@link Mode#OFF} the invocations skip logging entirely. All methods of this class can be
+ * called on any thread.
+ */
+public final class InvocationLog {
+
+    private static final Logger LOG = LogManager.getLogger(InvocationLog.class);
+
+    /**
+     * The logging modes.
+     */
+    public enum Mode {
+
+        /**
+         * No entries get logged, invocations do not even collect the data needed for an entry.
+         */
+        OFF,
+
+        /**
+         * Entries get sampled and failures get rate-limited (the default).
+         */
+        SAMPLED,
+
+        /**
+         * Every entry gets logged, useful when debugging.
+         */
+        ALL
+    }
+
+    /**
+     * The default maximum number of failures logged per second.
+     */
+    public static final int DEFAULT_MAX_FAILURES_PER_SECOND = 10;
+
+    private static volatile Mode mode = Mode.SAMPLED;
+
+    private static volatile Map<State, Double> outcomeRates = defaultOutcomeRates();
+
+    private static volatile Map<Family, Double> familyRates = Collections.emptyMap();
+
+    private static volatile int maxFailuresPerSecond = DEFAULT_MAX_FAILURES_PER_SECOND;
+
+    // guarded by the class
+    private static long windowStart = System.nanoTime();
+    private static int windowCount;
+    private static long windowSuppressed;
+
+    private static final LongAdder logged = new LongAdder();
+    private static final LongAdder suppressed = new LongAdder();
+
+    private InvocationLog() {
+    }
+
+    private static Map<State, Double> defaultOutcomeRates() {
+        Map<State, Double> rates = new EnumMap<>(State.class);
+        rates.put(State.SUCCEEDED, 0.01);
+        rates.put(State.FAILED, 1.0);
+        rates.put(State.CANCELLED, 0.0);
+        return Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * Sets the logging mode. The default is {@link Mode#SAMPLED}.
+     *
+     * @param mode the mode
+     */
+    public static void setMode(Mode mode) {
+        InvocationLog.mode = Objects.requireNonNull(mode, "mode can not be null");
+    }
+
+    /**
+     * Returns the logging mode.
+     *
+     * @return the mode
+     */
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns true unless the mode is {@link Mode#OFF}.
+     *
+     * @return true if invocations should report to the log
+     */
+    public static boolean isEnabled() {
+        return mode != Mode.OFF;
+    }
+
+    /**
+     * Sets the fraction of invocations with the given outcome that will be logged. The defaults
+     * are 0.01 for {@link State#SUCCEEDED}, 1 for {@link State#FAILED}, and 0 for {@link State#CANCELLED}.
+     *
+     * @param outcome the outcome (succeeded, failed, or cancelled)
+     * @param rate    the sample rate between 0 and 1
+     */
+    public static void setSampleRate(State outcome, double rate) {
+        Objects.requireNonNull(outcome, "outcome can not be null");
+        checkRate(rate);
+
+        Map<State, Double> rates = new EnumMap<>(outcomeRates);
+        rates.put(outcome, rate);
+        outcomeRates = Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * Sets the fraction of invocations receiving a response with a status code of the given family
+     * that will be logged. Overrides the sample rate of the outcome for these invocations.
+     *
+     * @param family the status code family
+     * @param rate   the sample rate between 0 and 1
+     */
+    public static void setSampleRate(Family family, double rate) {
+        Objects.requireNonNull(family, "family can not be null");
+        checkRate(rate);
+
+        Map<Family, Double> rates = new EnumMap<>(Family.class);
+        rates.putAll(familyRates);
+        rates.put(family, rate);
+        familyRates = Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * Sets the maximum number of failures that will be logged per second. Further failures
+     * within the same second get counted but not logged.
+     *
+     * @param max the maximum number of failures per second
+     */
+    public static void setMaxFailuresPerSecond(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max failures per second can not be negative but was " + max);
+        }
+        maxFailuresPerSecond = max;
+    }
+
+    /**
+     * Returns the maximum number of failures that will be logged per second.
+     *
+     * @return the maximum number of failures per second
+     */
+    public static int getMaxFailuresPerSecond() {
+        return maxFailuresPerSecond;
+    }
+
+    /**
+     * Returns the number of entries that have been logged.
+     *
+     * @return the number of logged entries
+     */
+    public static long getLoggedCount() {
+        return logged.sum();
+    }
+
+    /**
+     * Returns the number of failure entries that have been suppressed because of the rate limit.
+     *
+     * @return the number of suppressed entries
+     */
+    public static long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    /**
+     * Resets the sample rates, the rate limit, the mode, and the counters to their defaults.
+     */
+    public static void reset() {
+        mode = Mode.SAMPLED;
+        outcomeRates = defaultOutcomeRates();
+        familyRates = Collections.emptyMap();
+        maxFailuresPerSecond = DEFAULT_MAX_FAILURES_PER_SECOND;
+        logged.reset();
+        suppressed.reset();
+    }
+
+    /*
+     * Called by the worker thread of a finished invocation.
+     *
+     * @param statusCode the status code of the response or 0 if there was none
+     * @param nanos      the duration of the call to the backend or a negative value if it was not called
+     * @param detail     the error message of an error response, or null
+     */
+    static void log(ServiceInvocation<?> invocation, State outcome, int statusCode, long nanos, String detail, Throwable exception) {
+        Mode mode = InvocationLog.mode;
+        if (mode == Mode.OFF || !isSampled(mode, outcome, statusCode)) {
+            return;
+        }
+
+        long millis = nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+
+        if (outcome != State.FAILED) {
+            Level level = outcome == State.SUCCEEDED ? Level.INFO : Level.DEBUG;
+            if (LOG.isEnabled(level)) {
+                logged.increment();
+                LOG.log(level, "{} {}, status = {}, duration = {}ms", invocation.getName(), outcome, statusCode, millis);
+            }
+            return;
+        }
+
+        long skipped = mode == Mode.ALL ? 0 : acquireFailureSlot();
+        if (skipped < 0) {
+            suppressed.increment();
+            return;
+        }
+
+        logged.increment();
+        if (exception != null) {
+            LOG.error("{} FAILED, duration = {}ms, suppressed = {}", invocation.getName(), millis, skipped, exception);
+        } else {
+            LOG.warn("{} FAILED, status = {}, duration = {}ms, message = {}, suppressed = {}", invocation.getName(), statusCode, millis, detail, skipped);
+        }
+    }
+
+    private static boolean isSampled(Mode mode, State outcome, int statusCode) {
+        if (mode == Mode.ALL) {
+            return true;
+        }
+
+        Double rate = null;
+        if (statusCode > 0) {
+            rate = familyRates.get(Family.familyOf(statusCode));
+        }
+        if (rate == null) {
+            rate = outcomeRates.getOrDefault(outcome, 1.0);
+        }
+
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /*
+     * Returns the number of failures suppressed since the last logged failure, or -1 if
+     * the current failure has to be suppressed.
+     */
+    private static synchronized long acquireFailureSlot() {
+        long now = System.nanoTime();
+        if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+            windowStart = now;
+            windowCount = 0;
+        }
+
+        if (windowCount >= maxFailuresPerSecond) {
+            windowSuppressed++;
+            return -1;
+        }
+
+        windowCount++;
+        long skipped = windowSuppressed;
+        windowSuppressed = 0;
+        return skipped;
+    }
+
+    private static void checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("sample rate must be between 0 and 1 but was " + rate);
+        }
+    }
+}
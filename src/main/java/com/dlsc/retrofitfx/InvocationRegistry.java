@@ -0,0 +1,126 @@
+package com.dlsc.retrofitfx;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A global registry of all service invocations that are currently in flight. Invocations
+ * register themselves when they get executed and deregister themselves when they are done,
+ * using a concurrent set so that the worker threads never block each other. The registry can
+ * be used for cancelling all calls on logout, for counting outstanding calls, or for showing
+ * an activity monitor.
+ * <pre>
+ *         logoutButton.setOnAction(evt -> InvocationRegistry.cancelAll());
+ *         activityListView.setItems(InvocationRegistry.getInvocations());
+ *     </pre>
+ * The observable list returned by {@link #getInvocations()} gets updated on the UI thread at most
+ * once per update interval, not for every started or finished invocation.
+ */
+public final class InvocationRegistry {
+
+    /**
+     * The default minimum time in milliseconds between two updates of the observable list.
+     */
+    public static final long DEFAULT_UPDATE_INTERVAL = 250;
+
+    private static final Set<ServiceInvocation<?>> INVOCATIONS = ConcurrentHashMap.newKeySet();
+
+    private static final ObservableList<ServiceInvocation<?>> OBSERVABLE_INVOCATIONS = FXCollections.observableArrayList();
+
+    private static final ObservableList<ServiceInvocation<?>> UNMODIFIABLE_INVOCATIONS = FXCollections.unmodifiableObservableList(OBSERVABLE_INVOCATIONS);
+
+    private static final Throttle THROTTLE = new Throttle(DEFAULT_UPDATE_INTERVAL, () -> OBSERVABLE_INVOCATIONS.setAll(INVOCATIONS));
+
+    private static volatile boolean observed;
+
+    private InvocationRegistry() {
+    }
+
+    static void register(ServiceInvocation<?> invocation) {
+        if (INVOCATIONS.add(invocation) && observed) {
+            THROTTLE.request();
+        }
+    }
+
+    static void deregister(ServiceInvocation<?> invocation) {
+        if (INVOCATIONS.remove(invocation) && observed) {
+            THROTTLE.request();
+        }
+    }
+
+    /**
+     * Returns the number of invocations that are currently in flight. Can be called on any thread.
+     *
+     * @return the number of invocations
+     */
+    public static int getCount() {
+        return INVOCATIONS.size();
+    }
+
+    /**
+     * Returns a snapshot of the invocations that are currently in flight. Can be called on any thread.
+     *
+     * @return the invocations
+     */
+    public static List<ServiceInvocation<?>> getSnapshot() {
+        return List.copyOf(INVOCATIONS);
+    }
+
+    /**
+     * Returns an unmodifiable observable list of the invocations that are currently in flight. The
+     * list gets updated on the UI thread at most once per update interval. The list must only be
+     * accessed on the UI thread.
+     *
+     * @return the observable list of invocations
+     */
+    public static ObservableList<ServiceInvocation<?>> getInvocations() {
+        if (!observed) {
+            observed = true;
+            THROTTLE.request();
+        }
+        return UNMODIFIABLE_INVOCATIONS;
+    }
+
+    /**
+     * Sets the minimum time between two updates of the observable list.
+     *
+     * @param millis the interval in milliseconds
+     */
+    public static void setUpdateInterval(long millis) {
+        THROTTLE.setInterval(millis);
+    }
+
+    /**
+     * Cancels all invocations that are currently in flight.
+     *
+     * @return the number of invocations that actually got cancelled by this call
+     */
+    public static int cancelAll() {
+        return cancelAll(invocation -> true);
+    }
+
+    /**
+     * Cancels all invocations in flight that match the given predicate. Can be called on any thread.
+     *
+     * @param predicate the predicate for selecting the invocations to cancel
+     * @return the number of invocations that actually got cancelled by this call
+     */
+    public static int cancelAll(Predicate<? super ServiceInvocation<?>> predicate) {
+        Objects.requireNonNull(predicate, "predicate can not be null");
+
+        int count = 0;
+        for (ServiceInvocation<?> invocation : INVOCATIONS) {
+            // invocations that completed in the meantime can not be cancelled anymore
+            if (predicate.test(invocation) && !invocation.isCancelled() && invocation.cancel()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dlsc.retrofitfx;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A distribution of simulated server latencies, used by {@link SimulationProfile}.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Returns the next simulated latency.
+     *
+     * @param random the random generator to use
+     * @return the latency in milliseconds
+     */
+    long nextLatency(RandomGenerator random);
+
+    /**
+     * Returns a distribution that always returns the same latency.
+     *
+     * @param millis the latency in milliseconds
+     * @return the distribution
+     */
+    static LatencyDistribution fixed(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("latency millis can not be negative but was " + millis);
+        }
+        return random -> millis;
+    }
+
+    /**
+     * Returns a normal (gaussian) distribution. Negative samples are returned as zero.
+     *
+     * @param meanMillis   the mean latency in milliseconds
+     * @param stdDevMillis the standard deviation in milliseconds
+     * @return the distribution
+     */
+    static LatencyDistribution normal(long meanMillis, long stdDevMillis) {
+        if (meanMillis < 0 || stdDevMillis < 0) {
+            throw new IllegalArgumentException("mean and standard deviation can not be negative");
+        }
+        return random -> Math.max(0, Math.round(random.nextGaussian(meanMillis, stdDevMillis)));
+    }
+
+    /**
+     * Returns a long-tail (log-normal) distribution defined by its median and its 99th percentile,
+     * which resembles the latency of real backends: most calls are fast but a few are very slow.
+     *
+     * @param medianMillis the median latency in milliseconds
+     * @param p99Millis    the 99th percentile of the latency in milliseconds
+     * @return the distribution
+     */
+    static LatencyDistribution longTail(long medianMillis, long p99Millis) {
+        if (medianMillis <= 0 || p99Millis < medianMillis) {
+            throw new IllegalArgumentException("median must be positive and p99 must not be smaller than the median");
+        }
+        double mu = Math.log(medianMillis);
+        // 2.326 is the z-score of the 99th percentile of the standard normal distribution
+        double sigma = Math.log((double) p99Millis / medianMillis) / 2.326;
+        return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.dlsc.retrofitfx;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent latencies of the service invocations with the same name (or hedging key)
+ * in a lock-free ring buffer so that percentiles of the recent latency can be computed. Only the
+ * most recently used trackers are kept.
+ */
+final class LatencyTracker {
+
+    private static final int CAPACITY = 256;
+
+    private static final int MAX_TRACKERS = 256;
+
+    // access ordered, guarded by itself
+    private static final Map<String, LatencyTracker> TRACKERS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LatencyTracker> eldest) {
+            return size() > MAX_TRACKERS;
+        }
+    };
+
+    private final AtomicLongArray samples = new AtomicLongArray(CAPACITY);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private LatencyTracker() {
+    }
+
+    static LatencyTracker forName(String name) {
+        synchronized (TRACKERS) {
+            return TRACKERS.computeIfAbsent(name, key -> new LatencyTracker());
+        }
+    }
+
+    void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % CAPACITY), nanos);
+    }
+
+    int getSampleCount() {
+        return (int) Math.min(count.get(), CAPACITY);
+    }
+
+    /**
+     * Returns the given percentile of the recent latencies.
+     *
+     * @param percentile the percentile between 0 and 1
+     * @return the latency in milliseconds, or -1 if there are no samples yet
+     */
+    long percentile(double percentile) {
+        int size = getSampleCount();
+        if (size == 0) {
+            return -1;
+        }
+
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, size - 1))]);
+    }
+}
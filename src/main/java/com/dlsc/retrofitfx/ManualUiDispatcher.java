@@ -0,0 +1,104 @@
+package com.dlsc.retrofitfx;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deterministic dispatcher for tests and benchmarks. Dispatched work gets queued and only
+ * executed when one of the "run" methods gets called. The thread calling these methods acts
+ * as the UI thread while doing so.
+ * <pre>
+ *         ManualUiDispatcher dispatcher = UiDispatcher.manual();
+ *         CompletableFuture&lt;Data&gt; result = ServiceInvocation.create("Load data ...", () -> myService.loadData().execute())
+ *              .withDispatcher(dispatcher)
+ *              .onSuccess(data -> model.setData(data))
+ *              .execute();
+ *
+ *         while (!result.isDone()) {
+ *             dispatcher.runNext(1000);
+ *         }
+ *     </pre>
+ */
+public final class ManualUiDispatcher implements UiDispatcher {
+
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+
+    private volatile Thread dispatchThread;
+
+    ManualUiDispatcher() {
+    }
+
+    @Override
+    public void dispatch(Runnable runnable) {
+        queue.add(runnable);
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Thread.currentThread() == dispatchThread;
+    }
+
+    /**
+     * Returns the number of queued runnables.
+     *
+     * @return the number of pending runnables
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Runs the next queued runnable, if there is one.
+     *
+     * @return true if a runnable was executed
+     */
+    public boolean runNext() {
+        Runnable runnable = queue.poll();
+        if (runnable == null) {
+            return false;
+        }
+        run(runnable);
+        return true;
+    }
+
+    /**
+     * Waits for the next runnable to be queued and runs it.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     * @return true if a runnable was executed, false if the timeout has elapsed
+     * @throws InterruptedException if the calling thread gets interrupted while waiting
+     */
+    public boolean runNext(long timeoutMillis) throws InterruptedException {
+        Runnable runnable = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (runnable == null) {
+            return false;
+        }
+        run(runnable);
+        return true;
+    }
+
+    /**
+     * Runs queued runnables until the queue is empty, including the ones that get queued by
+     * the executed runnables.
+     *
+     * @return the number of executed runnables
+     */
+    public int runPending() {
+        int count = 0;
+        while (runNext()) {
+            count++;
+        }
+        return count;
+    }
+
+    private void run(Runnable runnable) {
+        Thread previous = dispatchThread;
+        dispatchThread = Thread.currentThread();
+        try {
+            runnable.run();
+        } finally {
+            dispatchThread = previous;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.dlsc.retrofitfx;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Coalesces the writes (e.g. PUT requests) targeting the same resource. For each key there is
+ * at most one write in flight. Values submitted while a write is in flight are kept pending and
+ * get combined into a single follow-up write, either by keeping only the latest value (the
+ * default) or by merging the values with a user-supplied function. This is especially useful
+ * for editors that save automatically while the user is typing.
+ * <pre>
+ *         MutationQueue&lt;String, Customer, Customer&gt; queue = MutationQueue.create(customer -&gt;
+ *              ServiceInvocation.create("Save customer ...", () -&gt; myService.saveCustomer(customer).execute())
+ *                  .onFailure((name, msg) -&gt; showError(msg)));
+ *
+ *         customer.nameProperty().addListener(it -&gt; queue.submit(customer.getId(), customer.copy()));
+ *     </pre>
+ * The completable future returned by {@link #submit(Object, Object)} completes with the result of
+ * the write that included the submitted value. Like the future returned by
+ * {@link ServiceInvocation#execute()} it completes with null if the write was not successful or
+ * has been cancelled, and exceptionally if the write failed with an exception.
+ *
+ * @param <K> the type of the keys identifying the resources
+ * @param <V> the type of the values to write
+ * @param <T> the type of the result of a write
+ */
+public final class MutationQueue<K, V, T> {
+
+    private static final Logger LOG = LogManager.getLogger(MutationQueue.class);
+
+    private final Function<? super V, ServiceInvocation<T>> writer;
+
+    private final Map<K, Slot> slots = new HashMap<>();
+
+    private final LongAdder writes = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private volatile BinaryOperator<V> merger = (older, newer) -> newer;
+
+    private MutationQueue(Function<? super V, ServiceInvocation<T>> writer) {
+        this.writer = Objects.requireNonNull(writer, "writer can not be null");
+    }
+
+    /**
+     * Creates a new queue.
+     *
+     * @param writer the function returning a new (not yet executed) invocation that writes the given value
+     * @param <K>    the type of the keys identifying the resources
+     * @param <V>    the type of the values to write
+     * @param <T>    the type of the result of a write
+     * @return the queue
+     */
+    public static <K, V, T> MutationQueue<K, V, T> create(Function<? super V, ServiceInvocation<T>> writer) {
+        return new MutationQueue<>(writer);
+    }
+
+    /**
+     * Sets the function used for combining a pending value with a newly submitted value. By
+     * default, the newer value replaces the pending one (last write wins).
+     *
+     * @param merger the function receiving the pending and the new value and returning the value to write
+     * @return the queue
+     */
+    public MutationQueue<K, V, T> withMerge(BinaryOperator<V> merger) {
+        this.merger = Objects.requireNonNull(merger, "merger can not be null");
+        return this;
+    }
+
+    /**
+     * Submits a value to be written for the given key. The value will be written immediately
+     * if there is no write in flight for the key, otherwise it will be combined with the other
+     * pending values and written once the current write is done.
+     *
+     * @param key   the key of the resource
+     * @param value the value to write
+     * @return a completable future that completes with the result of the write covering the value
+     */
+    public CompletableFuture<T> submit(K key, V value) {
+        Objects.requireNonNull(key, "key can not be null");
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Batch batch = null;
+
+        synchronized (slots) {
+            Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            if (slot.waiters.isEmpty()) {
+                slot.value = value;
+            } else {
+                slot.value = merger.apply(slot.value, value);
+                coalesced.increment();
+            }
+            slot.waiters.add(future);
+
+            if (!slot.inFlight) {
+                slot.inFlight = true;
+                batch = slot.take();
+            }
+        }
+
+        if (batch != null) {
+            write(key, batch);
+        }
+
+        return future;
+    }
+
+    private void write(K key, Batch batch) {
+        writes.increment();
+
+        CompletableFuture<T> result;
+        try {
+            ServiceInvocation<T> invocation = Objects.requireNonNull(writer.apply(batch.value), "writer returned null");
+            LOG.debug("writing value for key {}, covering {} submission(s)", key, batch.waiters.size());
+            result = invocation.execute();
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((value, exception) -> {
+            for (CompletableFuture<T> waiter : batch.waiters) {
+                if (exception != null) {
+                    waiter.completeExceptionally(exception);
+                } else {
+                    waiter.complete(value);
+                }
+            }
+
+            Batch next = null;
+            synchronized (slots) {
+                Slot slot = slots.get(key);
+                if (slot.waiters.isEmpty()) {
+                    slots.remove(key);
+                } else {
+                    next = slot.take();
+                }
+            }
+
+            if (next != null) {
+                write(key, next);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of keys that currently have a write in flight.
+     *
+     * @return the number of keys
+     */
+    public int getInFlightCount() {
+        synchronized (slots) {
+            return slots.size();
+        }
+    }
+
+    /**
+     * Returns the number of writes that have been sent.
+     *
+     * @return the number of writes
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Returns the number of submitted values that were combined with another pending value
+     * instead of causing a write of their own.
+     *
+     * @return the number of coalesced values
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /*
+     * The state of a single key, guarded by the slots map.
+     */
+    private final class Slot {
+
+        private V value;
+
+        private List<CompletableFuture<T>> waiters = new ArrayList<>();
+
+        private boolean inFlight;
+
+        private Batch take() {
+            Batch batch = new Batch(value, waiters);
+            value = null;
+            waiters = new ArrayList<>();
+            return batch;
+        }
+    }
+
+    private final class Batch {
+
+        private final V value;
+
+        private final List<CompletableFuture<T>> waiters;
+
+        private Batch(V value, List<CompletableFuture<T>> waiters) {
+            this.value = value;
+            this.waiters = waiters;
+        }
+    }
+}
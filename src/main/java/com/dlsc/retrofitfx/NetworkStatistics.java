@@ -0,0 +1,99 @@
+package com.dlsc.retrofitfx;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Network timings aggregated over all service invocations with the same name. Use the averages
+ * to decide whether connections should be pre-warmed (high DNS / connect / TLS times), payloads
+ * should be compressed or reduced (high body times and byte counts), or the backend itself is
+ * slow (high time to first byte). The values get collected by the {@link InvocationEventListener}.
+ * <p>
+ * Only the timings of the most recently used names are kept (see {@link #setMaxNames(int)}), so
+ * invocation names containing IDs do not cause the statistics to grow without bounds.
+ */
+public final class NetworkStatistics {
+
+    /**
+     * The default maximum number of names for which timings are kept.
+     */
+    public static final int DEFAULT_MAX_NAMES = 256;
+
+    private static volatile int maxNames = DEFAULT_MAX_NAMES;
+
+    // access ordered, guarded by itself
+    private static final Map<String, NetworkTimings> TIMINGS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NetworkTimings> eldest) {
+            return size() > maxNames;
+        }
+    };
+
+    private NetworkStatistics() {
+    }
+
+    /**
+     * Returns the aggregated timings of all invocations with the given name.
+     *
+     * @param name the name of the invocations
+     * @return the timings (empty if there were no calls yet)
+     */
+    public static NetworkTimings forName(String name) {
+        synchronized (TIMINGS) {
+            return TIMINGS.computeIfAbsent(name, key -> new NetworkTimings());
+        }
+    }
+
+    /**
+     * Returns the names of all invocations for which timings have been collected.
+     *
+     * @return the names
+     */
+    public static Set<String> getNames() {
+        synchronized (TIMINGS) {
+            return Set.copyOf(TIMINGS.keySet());
+        }
+    }
+
+    /**
+     * Sets the maximum number of names for which timings are kept. Once the limit is exceeded
+     * the timings of the least recently used name get removed.
+     *
+     * @param max the maximum number of names
+     */
+    public static void setMaxNames(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("max names must be larger than zero but was " + max);
+        }
+
+        synchronized (TIMINGS) {
+            maxNames = max;
+
+            Iterator<Map.Entry<String, NetworkTimings>> iterator = TIMINGS.entrySet().iterator();
+            while (TIMINGS.size() > max && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of names for which timings are kept.
+     *
+     * @return the maximum number of names
+     */
+    public static int getMaxNames() {
+        return maxNames;
+    }
+
+    /**
+     * Removes all collected timings.
+     */
+    public static void reset() {
+        synchronized (TIMINGS) {
+            TIMINGS.clear();
+        }
+    }
+}
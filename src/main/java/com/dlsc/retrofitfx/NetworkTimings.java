@@ -0,0 +1,203 @@
+package com.dlsc.retrofitfx;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The network phase timings and the payload sizes of the HTTP calls made by a service
+ * invocation (or, when returned by {@link NetworkStatistics}, of all invocations with the same
+ * name). The values get collected by the {@link InvocationEventListener}, which must be
+ * registered with the OkHttp client. If an invocation makes several calls (e.g. a pipeline
+ * or a hedged request) then the values are summed up.
+ * <ul>
+ *     <li>DNS - resolving the host name</li>
+ *     <li>Connect - establishing the TCP connection (including the TLS handshake)</li>
+ *     <li>TLS - the TLS handshake</li>
+ *     <li>Time to first byte - from sending the request until the response headers start arriving</li>
+ *     <li>Body - receiving the response body</li>
+ * </ul>
+ */
+public final class NetworkTimings {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder failedConnections = new LongAdder();
+    private final LongAdder dns = new LongAdder();
+    private final LongAdder connect = new LongAdder();
+    private final LongAdder tls = new LongAdder();
+    private final LongAdder timeToFirstByte = new LongAdder();
+    private final LongAdder body = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    NetworkTimings() {
+    }
+
+    void addDns(long nanos) {
+        dns.add(nanos);
+    }
+
+    void addConnect(long nanos) {
+        connections.increment();
+        connect.add(nanos);
+    }
+
+    void addFailedConnect() {
+        failedConnections.increment();
+    }
+
+    void addTls(long nanos) {
+        tls.add(nanos);
+    }
+
+    void addTimeToFirstByte(long nanos) {
+        timeToFirstByte.add(nanos);
+    }
+
+    void addBody(long nanos) {
+        body.add(nanos);
+    }
+
+    void addBytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    void addBytesReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    void addCall(long nanos, boolean failed) {
+        calls.increment();
+        total.add(nanos);
+        if (failed) {
+            failedCalls.increment();
+        }
+    }
+
+    /**
+     * Returns the number of HTTP calls.
+     *
+     * @return the number of calls
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of HTTP calls that failed with an I/O error.
+     *
+     * @return the number of failed calls
+     */
+    public long getFailedCallCount() {
+        return failedCalls.sum();
+    }
+
+    /**
+     * Returns the number of new connections. Calls that reused a pooled connection did not open one.
+     *
+     * @return the number of new connections
+     */
+    public long getConnectionCount() {
+        return connections.sum();
+    }
+
+    /**
+     * Returns the number of connection attempts that failed, e.g. because an address of the host
+     * was not reachable. Failed attempts are neither included in the connection count nor in the
+     * connect time.
+     *
+     * @return the number of failed connection attempts
+     */
+    public long getFailedConnectionCount() {
+        return failedConnections.sum();
+    }
+
+    /**
+     * Returns the time spent resolving host names.
+     *
+     * @return the DNS time
+     */
+    public Duration getDns() {
+        return Duration.ofNanos(dns.sum());
+    }
+
+    /**
+     * Returns the time spent establishing connections, including the TLS handshakes.
+     *
+     * @return the connect time
+     */
+    public Duration getConnect() {
+        return Duration.ofNanos(connect.sum());
+    }
+
+    /**
+     * Returns the time spent on TLS handshakes.
+     *
+     * @return the TLS time
+     */
+    public Duration getTls() {
+        return Duration.ofNanos(tls.sum());
+    }
+
+    /**
+     * Returns the time from sending the requests until the response headers started arriving.
+     *
+     * @return the time to first byte
+     */
+    public Duration getTimeToFirstByte() {
+        return Duration.ofNanos(timeToFirstByte.sum());
+    }
+
+    /**
+     * Returns the time spent receiving the response bodies.
+     *
+     * @return the body transfer time
+     */
+    public Duration getBody() {
+        return Duration.ofNanos(body.sum());
+    }
+
+    /**
+     * Returns the total duration of the calls.
+     *
+     * @return the total time
+     */
+    public Duration getTotal() {
+        return Duration.ofNanos(total.sum());
+    }
+
+    /**
+     * Returns the number of bytes sent (request headers and bodies).
+     *
+     * @return the bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Returns the number of bytes received (response headers and bodies).
+     *
+     * @return the bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "calls = " + getCallCount() +
+                ", connections = " + getConnectionCount() +
+                ", failed connections = " + getFailedConnectionCount() +
+                ", dns = " + getDns().toMillis() + "ms" +
+                ", connect = " + getConnect().toMillis() + "ms" +
+                ", tls = " + getTls().toMillis() + "ms" +
+                ", ttfb = " + getTimeToFirstByte().toMillis() + "ms" +
+                ", body = " + getBody().toMillis() + "ms" +
+                ", total = " + getTotal().toMillis() + "ms" +
+                ", sent = " + getBytesSent() + " bytes" +
+                ", received = " + getBytesReceived() + " bytes";
+    }
+}
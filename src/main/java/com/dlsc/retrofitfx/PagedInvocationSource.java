@@ -0,0 +1,494 @@
+package com.dlsc.retrofitfx;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads a large (or endless) data set page by page, e.g. for an infinite-scroll table. Each page
+ * gets loaded by a service invocation created by a page loader. Pages can either be addressed by
+ * their index (see {@link #byIndex(int, IndexLoader)}) or by a cursor returned by the server
+ * together with the previous page (see {@link #byCursor(int, CursorLoader)}).
+ * <pre>
+ *         PagedInvocationSource&lt;Customer&gt; source = PagedInvocationSource.byIndex(100, (page, size) -&gt;
+ *                  ServiceInvocation.create("Load customers ...", () -&gt; myService.listCustomers(page, size).execute()))
+ *              .withPrefetch(2)
+ *              .withMaxCachedPages(20)
+ *              .onPageLoaded(page -&gt; tableView.refresh());
+ *
+ *         // called by the scroll listener of the table
+ *         source.setViewport(firstVisibleRow, lastVisibleRow);
+ *
+ *         // called by the cell value factory, returns null while the row is still being loaded
+ *         Customer customer = source.getItem(row);
+ *     </pre>
+ * Requesting a page that is already being loaded does not cause another request. When the viewport
+ * changes the source loads the visible pages plus the configured number of pages following them, so
+ * that they are available before the user reaches them. Once more pages than the configured maximum
+ * are held in memory the pages furthest away from the viewport get evicted (and cancelled if they are
+ * still being loaded). Evicted pages will be loaded again when needed.
+ *
+ * @param <T> the type of the items
+ */
+public final class PagedInvocationSource<T> {
+
+    private static final Logger LOG = LogManager.getLogger(PagedInvocationSource.class);
+
+    /**
+     * Creates the invocation for loading a page identified by its index.
+     *
+     * @param <T> the type of the items
+     */
+    @FunctionalInterface
+    public interface IndexLoader<T> {
+
+        /**
+         * Returns a new (not yet executed) invocation loading the given page. A page
+         * with fewer items than the page size is considered to be the last page.
+         *
+         * @param page     the index of the page, starting at 0
+         * @param pageSize the maximum number of items of the page
+         * @return the invocation
+         */
+        ServiceInvocation<List<T>> load(int page, int pageSize);
+    }
+
+    /**
+     * Creates the invocation for loading a page identified by a cursor.
+     *
+     * @param <T> the type of the items
+     */
+    @FunctionalInterface
+    public interface CursorLoader<T> {
+
+        /**
+         * Returns a new (not yet executed) invocation loading the page starting at the given cursor.
+         *
+         * @param cursor   the cursor returned with the previous page or null for the first page
+         * @param pageSize the maximum number of items of the page
+         * @return the invocation
+         */
+        ServiceInvocation<Page<T>> load(String cursor, int pageSize);
+    }
+
+    /**
+     * A page returned by a {@link CursorLoader}.
+     *
+     * @param items      the items of the page
+     * @param nextCursor the cursor of the next page or null if this is the last page
+     * @param <T>        the type of the items
+     */
+    public record Page<T>(List<T> items, String nextCursor) {
+    }
+
+    private final int pageSize;
+
+    private final IndexLoader<T> indexLoader;
+
+    private final CursorLoader<T> cursorLoader;
+
+    // guarded by itself, together with all other mutable state
+    private final Map<Integer, Entry> pages = new HashMap<>();
+
+    // bounded together with the pages, see evictCursors()
+    private final Map<Integer, String> cursors = new HashMap<>();
+
+    private int lastPage = -1;
+
+    private int firstVisiblePage;
+
+    private int lastVisiblePage;
+
+    private int prefetch = 1;
+
+    private int maxCachedPages = 20;
+
+    private IntConsumer onPageLoaded;
+
+    private PagedInvocationSource(int pageSize, IndexLoader<T> indexLoader, CursorLoader<T> cursorLoader) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be larger than zero but was " + pageSize);
+        }
+
+        this.pageSize = pageSize;
+        this.indexLoader = indexLoader;
+        this.cursorLoader = cursorLoader;
+    }
+
+    /**
+     * Creates a new source for pages addressed by their index.
+     *
+     * @param pageSize the number of items per page
+     * @param loader   the loader creating the invocation for a given page
+     * @param <T>      the type of the items
+     * @return the source
+     */
+    public static <T> PagedInvocationSource<T> byIndex(int pageSize, IndexLoader<T> loader) {
+        return new PagedInvocationSource<>(pageSize, Objects.requireNonNull(loader, "loader can not be null"), null);
+    }
+
+    /**
+     * Creates a new source for pages addressed by cursors. As the cursor of a page is only known
+     * after its predecessor has been loaded, pages get loaded in sequence.
+     *
+     * @param pageSize the number of items per page
+     * @param loader   the loader creating the invocation for a given cursor
+     * @param <T>      the type of the items
+     * @return the source
+     */
+    public static <T> PagedInvocationSource<T> byCursor(int pageSize, CursorLoader<T> loader) {
+        return new PagedInvocationSource<>(pageSize, null, Objects.requireNonNull(loader, "loader can not be null"));
+    }
+
+    /**
+     * Sets the number of pages following the viewport that will be loaded in advance.
+     * The default is 1.
+     *
+     * @param pages the number of pages
+     * @return the source
+     */
+    public PagedInvocationSource<T> withPrefetch(int pages) {
+        if (pages < 0) {
+            throw new IllegalArgumentException("prefetch can not be negative but was " + pages);
+        }
+
+        synchronized (this.pages) {
+            this.prefetch = pages;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pages held in memory. Pages inside the viewport (or about to be
+     * prefetched) are never evicted, hence the limit might temporarily be exceeded for very large
+     * viewports. The default is 20. For cursor based sources the cursors of evicted pages get
+     * dropped as well, except for the nearest one before the viewport. Going back to such a page
+     * walks forward again from the closest cursor that is still known.
+     *
+     * @param pages the maximum number of pages
+     * @return the source
+     */
+    public PagedInvocationSource<T> withMaxCachedPages(int pages) {
+        if (pages <= 0) {
+            throw new IllegalArgumentException("max cached pages must be larger than zero but was " + pages);
+        }
+
+        synchronized (this.pages) {
+            this.maxCachedPages = pages;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the handler that gets invoked after a page has been loaded successfully. The handler
+     * gets invoked on the thread of the dispatcher used by the page invocations, by default the
+     * UI thread.
+     *
+     * @param onPageLoaded the handler receiving the index of the page
+     * @return the source
+     */
+    public PagedInvocationSource<T> onPageLoaded(IntConsumer onPageLoaded) {
+        this.onPageLoaded = onPageLoaded;
+        return this;
+    }
+
+    /**
+     * Returns the number of items per page.
+     *
+     * @return the page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Informs the source about the rows currently visible. Loads the visible pages and the pages
+     * to be prefetched, then evicts the pages furthest away from the viewport if more pages than
+     * allowed are held in memory.
+     *
+     * @param firstRow the index of the first visible row
+     * @param lastRow  the index of the last visible row
+     */
+    public void setViewport(int firstRow, int lastRow) {
+        if (firstRow < 0 || lastRow < firstRow) {
+            throw new IllegalArgumentException("invalid viewport, first row = " + firstRow + ", last row = " + lastRow);
+        }
+
+        int last;
+        synchronized (pages) {
+            firstVisiblePage = firstRow / pageSize;
+            lastVisiblePage = lastRow / pageSize;
+            last = lastVisiblePage + prefetch;
+        }
+
+        for (int page = firstRow / pageSize; page <= last; page++) {
+            if (isBeyondEnd(page)) {
+                break;
+            }
+            getPage(page);
+        }
+
+        evict();
+    }
+
+    /**
+     * Returns the item in the given row. If the page containing the row has not been loaded, yet,
+     * it will be requested and null will be returned.
+     *
+     * @param row the index of the row
+     * @return the item or null if it is not available (yet)
+     */
+    public T getItem(int row) {
+        if (row < 0) {
+            throw new IllegalArgumentException("row can not be negative but was " + row);
+        }
+
+        int page = row / pageSize;
+
+        List<T> items;
+        synchronized (pages) {
+            Entry entry = pages.get(page);
+            items = entry != null ? entry.items : null;
+        }
+
+        if (items == null) {
+            getPage(page);
+            return null;
+        }
+
+        int offset = row % pageSize;
+        return offset < items.size() ? items.get(offset) : null;
+    }
+
+    /**
+     * Returns the items of the given page, loading the page if needed. The returned future completes
+     * with an empty list if the page is beyond the last page and with null if loading the page failed
+     * or has been cancelled.
+     *
+     * @param page the index of the page
+     * @return the future delivering the items
+     */
+    public CompletableFuture<List<T>> getPage(int page) {
+        if (page < 0) {
+            throw new IllegalArgumentException("page can not be negative but was " + page);
+        }
+
+        Entry entry;
+        String cursor = null;
+        int known = page;
+
+        synchronized (pages) {
+            Entry existing = pages.get(page);
+            if (existing != null) {
+                return existing.future;
+            }
+
+            if (isBeyondEnd(page)) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+
+            if (cursorLoader == null || page == 0 || cursors.containsKey(page)) {
+                cursor = cursors.get(page);
+                entry = new Entry();
+                pages.put(page, entry);
+            } else {
+                entry = null;
+                while (known > 0 && !cursors.containsKey(known)) {
+                    known--;
+                }
+            }
+        }
+
+        if (entry == null) {
+            /*
+             * The cursor becomes known once the previous page has been loaded. Load the last page
+             * with a known cursor and try again afterwards, this walks forward one page per load
+             * instead of recursing once per missing page.
+             */
+            return getPage(known).thenCompose(previous -> previous == null ? CompletableFuture.completedFuture(null) : getPage(page));
+        }
+
+        load(page, entry, cursor);
+        return entry.future;
+    }
+
+    /**
+     * Returns true if the last page has been loaded.
+     *
+     * @return true if the end of the data set is known
+     */
+    public boolean isEndReached() {
+        synchronized (pages) {
+            return lastPage >= 0;
+        }
+    }
+
+    /**
+     * Returns the number of pages currently held in memory, including the pages being loaded.
+     *
+     * @return the number of pages
+     */
+    public int getCachedPageCount() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * Cancels all page loads and discards all pages, e.g. after the data set has changed
+     * on the server.
+     */
+    public void clear() {
+        List<Entry> removed;
+        synchronized (pages) {
+            removed = new ArrayList<>(pages.values());
+            pages.clear();
+            cursors.clear();
+            lastPage = -1;
+        }
+
+        removed.forEach(Entry::cancel);
+    }
+
+    private boolean isBeyondEnd(int page) {
+        synchronized (pages) {
+            return lastPage >= 0 && page > lastPage;
+        }
+    }
+
+    private void load(int page, Entry entry, String cursor) {
+        LOG.debug("loading page {}", page);
+
+        CompletableFuture<List<T>> result;
+        try {
+            if (cursorLoader != null) {
+                ServiceInvocation<Page<T>> invocation = Objects.requireNonNull(cursorLoader.load(cursor, pageSize), "loader returned null");
+                entry.invocation = invocation;
+                result = invocation.execute().thenApply(p -> p == null ? null : loaded(page, entry, p.items(), p.nextCursor(), p.nextCursor() == null));
+            } else {
+                ServiceInvocation<List<T>> invocation = Objects.requireNonNull(indexLoader.load(page, pageSize), "loader returned null");
+                entry.invocation = invocation;
+                result = invocation.execute().thenApply(items -> items == null ? null : loaded(page, entry, items, null, items.size() < pageSize));
+            }
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((items, exception) -> {
+            if (items == null || exception != null) {
+                // allow the page to be requested again
+                synchronized (pages) {
+                    pages.remove(page, entry);
+                }
+            } else if (onPageLoaded != null) {
+                onPageLoaded.accept(page);
+            }
+
+            if (exception != null) {
+                entry.future.completeExceptionally(exception);
+            } else {
+                entry.future.complete(items);
+            }
+        });
+    }
+
+    private List<T> loaded(int page, Entry entry, List<T> items, String nextCursor, boolean last) {
+        List<T> copy = List.copyOf(items);
+
+        synchronized (pages) {
+            if (pages.get(page) == entry) {
+                entry.items = copy;
+            }
+
+            if (last) {
+                lastPage = page;
+            } else if (cursorLoader != null) {
+                cursors.put(page + 1, nextCursor);
+            }
+        }
+
+        evict();
+        return copy;
+    }
+
+    private void evict() {
+        List<Entry> evicted = new ArrayList<>();
+
+        synchronized (pages) {
+            int first = firstVisiblePage;
+            int last = lastVisiblePage + prefetch;
+
+            while (pages.size() > maxCachedPages) {
+                int furthest = -1;
+                int distance = 0;
+
+                for (int page : pages.keySet()) {
+                    int d = page < first ? first - page : page - last;
+                    if (d > distance) {
+                        distance = d;
+                        furthest = page;
+                    }
+                }
+
+                if (furthest < 0) {
+                    // only pages inside the viewport and the prefetch range are left
+                    break;
+                }
+
+                evicted.add(pages.remove(furthest));
+            }
+
+            evictCursors(first);
+        }
+
+        if (!evicted.isEmpty()) {
+            LOG.debug("evicted {} page(s)", evicted.size());
+            evicted.forEach(Entry::cancel);
+        }
+    }
+
+    /*
+     * Drops the cursors that are no longer needed once there are more of them than pages may be
+     * cached. Kept are the cursors of the cached pages, the cursors of the pages following them,
+     * and the nearest known cursor before the viewport, from where pages that are scrolled to
+     * again can be reached without walking forward from the first page.
+     */
+    private void evictCursors(int firstVisible) {
+        if (cursors.size() <= maxCachedPages) {
+            return;
+        }
+
+        int nearest = -1;
+        for (int page : cursors.keySet()) {
+            if (page <= firstVisible && page > nearest) {
+                nearest = page;
+            }
+        }
+
+        int keep = nearest;
+        cursors.keySet().removeIf(page -> page != keep && !pages.containsKey(page) && !pages.containsKey(page - 1));
+    }
+
+    private final class Entry {
+
+        private final CompletableFuture<List<T>> future = new CompletableFuture<>();
+
+        private volatile ServiceInvocation<?> invocation;
+
+        private volatile List<T> items;
+
+        private void cancel() {
+            ServiceInvocation<?> invocation = this.invocation;
+            if (invocation != null && !future.isDone()) {
+                invocation.cancel();
+            }
+        }
+    }
+}
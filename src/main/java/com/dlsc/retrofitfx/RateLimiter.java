@@ -0,0 +1,357 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.Headers;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit2.Response;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A client-side token bucket used for staying below the request quotas of a backend. Each call
+ * takes one permit from the bucket, which gets refilled at the configured rate up to the burst
+ * size. When no permit is available the call either waits (the default) or gets rejected with a
+ * {@link RejectedExecutionException} before it is sent.
+ * <p>
+ * The limiter also adjusts itself based on the responses of the backend. It pauses when the
+ * backend answers with a "Retry-After" header or reports via the common rate limit headers
+ * ("X-RateLimit-Remaining" / "X-RateLimit-Reset" and "RateLimit-Remaining" / "RateLimit-Reset")
+ * that the quota has been used up.
+ * <pre>
+ *         RateLimiter limiter = RateLimiter.forKey("customer-service", 10, 20);
+ *
+ *         ServiceInvocation.create("Load customers ...", () -> myService.getAllCustomers().execute())
+ *              .withRateLimiter(limiter)
+ *              .execute();
+ *     </pre>
+ */
+public final class RateLimiter {
+
+    private static final Logger LOG = LogManager.getLogger(RateLimiter.class);
+
+    private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static final long DEFAULT_TOO_MANY_REQUESTS_PAUSE = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * Determines what happens to a call when no permit is available.
+     */
+    public enum Mode {
+
+        /**
+         * The call waits until a permit becomes available (or the maximum wait time has been reached).
+         */
+        WAIT,
+
+        /**
+         * The call gets rejected immediately.
+         */
+        REJECT
+    }
+
+    private record Bucket(double permits, long timestamp) {
+    }
+
+    private final String name;
+
+    private final AtomicReference<Bucket> bucket;
+
+    private final AtomicLong pausedUntil = new AtomicLong(System.nanoTime());
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+
+    private volatile double permitsPerSecond;
+
+    private volatile int burst;
+
+    private volatile Mode mode = Mode.WAIT;
+
+    private volatile long maxWait = Long.MAX_VALUE;
+
+    private RateLimiter(String name, double permitsPerSecond, int burst) {
+        this.name = Objects.requireNonNull(name, "rate limiter name can not be null");
+        setRate(permitsPerSecond, burst);
+        this.bucket = new AtomicReference<>(new Bucket(burst, System.nanoTime()));
+    }
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param permitsPerSecond the number of calls per second
+     * @param burst            the number of calls that can be made at once after a quiet period
+     * @return the rate limiter
+     */
+    public static RateLimiter create(double permitsPerSecond, int burst) {
+        return new RateLimiter("anonymous", permitsPerSecond, burst);
+    }
+
+    /**
+     * Returns the rate limiter registered for the given key, e.g. the name of a service. A new
+     * limiter with the given rate and burst gets created if there is no limiter for the key yet.
+     *
+     * @param key              the key
+     * @param permitsPerSecond the number of calls per second (only used for a new limiter)
+     * @param burst            the number of calls that can be made at once (only used for a new limiter)
+     * @return the rate limiter
+     */
+    public static RateLimiter forKey(String key, double permitsPerSecond, int burst) {
+        Objects.requireNonNull(key, "rate limiter key can not be null");
+        return LIMITERS.computeIfAbsent(key, k -> new RateLimiter(k, permitsPerSecond, burst));
+    }
+
+    /**
+     * Returns the name of the limiter, which is its key if it was created via {@link #forKey(String, double, int)}.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Changes the rate and the burst size of the limiter.
+     *
+     * @param permitsPerSecond the number of calls per second
+     * @param burst            the number of calls that can be made at once after a quiet period
+     */
+    public void setRate(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permits per second must be positive but was " + permitsPerSecond);
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1 but was " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Sets the mode used when no permit is available.
+     *
+     * @param mode the mode
+     * @return the rate limiter
+     */
+    public RateLimiter withMode(Mode mode) {
+        this.mode = Objects.requireNonNull(mode, "mode can not be null");
+        return this;
+    }
+
+    /**
+     * Sets the maximum time a call will wait for a permit. Calls that would have to wait longer
+     * get rejected, no matter which mode has been set.
+     *
+     * @param millis the maximum wait time in milliseconds
+     * @return the rate limiter
+     */
+    public RateLimiter withMaxWait(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("max wait millis can not be negative but was " + millis);
+        }
+        this.maxWait = millis;
+        return this;
+    }
+
+    /**
+     * Takes a permit, waiting for it if needed.
+     *
+     * @return the time waited in milliseconds
+     * @throws InterruptedException       if the calling thread gets interrupted while waiting
+     * @throws RejectedExecutionException if the call was rejected
+     */
+    long acquire() throws InterruptedException {
+        long wait;
+
+        while (true) {
+            long now = System.nanoTime();
+            double rate = permitsPerSecond;
+            Bucket current = bucket.get();
+
+            double permits = Math.min(burst, current.permits() + (now - current.timestamp()) * rate / TimeUnit.SECONDS.toNanos(1));
+            wait = permits >= 1 ? 0 : (long) ((1 - permits) / rate * TimeUnit.SECONDS.toNanos(1));
+            wait = Math.max(wait, pausedUntil.get() - now);
+
+            long maxWaitNanos = mode == Mode.REJECT ? 0 : TimeUnit.MILLISECONDS.toNanos(maxWait);
+            if (wait > maxWaitNanos) {
+                rejected.increment();
+                throw new RejectedExecutionException("rate limit of '" + name + "' exceeded, a permit would be available in " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms");
+            }
+
+            // permits can become negative, this way waiting calls get queued in a fair manner
+            if (bucket.compareAndSet(current, new Bucket(permits - 1, now))) {
+                break;
+            }
+        }
+
+        acquired.increment();
+
+        if (wait > 0) {
+            LOG.debug("waiting {}ms for permit of rate limiter '{}'", TimeUnit.NANOSECONDS.toMillis(wait), name);
+            waited.increment();
+            waitTime.add(wait);
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(wait);
+    }
+
+    /*
+     * Takes a permit only if one is available right away, never waits and never counts as a
+     * rejection. Used for optional calls like hedges that are simply skipped otherwise.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            Bucket current = bucket.get();
+
+            double permits = Math.min(burst, current.permits() + (now - current.timestamp()) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            if (permits < 1 || pausedUntil.get() > now) {
+                return false;
+            }
+
+            if (bucket.compareAndSet(current, new Bucket(permits - 1, now))) {
+                acquired.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Pauses the limiter, no permits will be handed out before the given time has passed.
+     *
+     * @param millis the pause in milliseconds
+     */
+    public void pause(long millis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        pausedUntil.accumulateAndGet(until, Math::max);
+    }
+
+    /*
+     * Adjusts the limiter based on the headers of the given response.
+     */
+    void update(Response<?> response) {
+        Headers headers = response.headers();
+
+        long pause = parseRetryAfter(headers.get("Retry-After"));
+
+        if (pause < 0 && isZero(headers.get("X-RateLimit-Remaining"))) {
+            pause = parseReset(headers.get("X-RateLimit-Reset"));
+        }
+
+        if (pause < 0 && isZero(headers.get("RateLimit-Remaining"))) {
+            pause = parseReset(headers.get("RateLimit-Reset"));
+        }
+
+        if (pause < 0 && response.code() == HttpStatusCode.TOO_MANY_REQUESTS.getStatusCode()) {
+            pause = DEFAULT_TOO_MANY_REQUESTS_PAUSE;
+        }
+
+        if (pause > 0) {
+            LOG.debug("pausing rate limiter '{}' for {}ms because of response headers", name, pause);
+            pause(pause);
+        }
+    }
+
+    private static boolean isZero(String value) {
+        return value != null && value.trim().equals("0");
+    }
+
+    /*
+     * Retry-After is either a number of seconds or an HTTP date.
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ex) {
+                LOG.warn("unable to parse Retry-After header: {}", value);
+                return -1;
+            }
+        }
+    }
+
+    /*
+     * Reset headers contain either the number of seconds until the reset or the reset time in epoch seconds.
+     */
+    private static long parseReset(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+
+        try {
+            long seconds = Long.parseLong(value.trim());
+            long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+            return TimeUnit.SECONDS.toMillis(seconds > nowSeconds / 2 ? Math.max(0, seconds - nowSeconds) : seconds);
+        } catch (NumberFormatException e) {
+            LOG.warn("unable to parse rate limit reset header: {}", value);
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of permits that are currently available. The value is negative if calls
+     * are already waiting for permits.
+     *
+     * @return the available permits
+     */
+    public double getAvailablePermits() {
+        Bucket current = bucket.get();
+        long now = System.nanoTime();
+        return Math.min(burst, current.permits() + (now - current.timestamp()) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Returns the number of permits that have been handed out.
+     *
+     * @return the number of acquired permits
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * Returns the number of calls that have been rejected.
+     *
+     * @return the number of rejected calls
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of calls that had to wait for a permit.
+     *
+     * @return the number of waiting calls
+     */
+    public long getWaitCount() {
+        return waited.sum();
+    }
+
+    /**
+     * Returns the total time that calls had to wait for permits.
+     *
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.sum());
+    }
+}
@@ -0,0 +1,271 @@
+package com.dlsc.retrofitfx;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValueBase;
+import javafx.concurrent.Worker.State;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * An observable value whose value gets loaded by a service invocation, but only while somebody
+ * is interested in it. The invocation gets executed when the first listener (or binding) gets
+ * added. When the last listener gets removed the invocation gets cancelled if it is still running
+ * and the value gets released, so data of views that are not showing does not occupy memory.
+ * <pre>
+ *         RemoteResource&lt;List&lt;Customer&gt;&gt; customers = RemoteResource.create(() -&gt;
+ *                  ServiceInvocation.create("Load customers ...", () -&gt; myService.listCustomers().execute()))
+ *              .withMaxAge(Duration.ofMinutes(5));
+ *
+ *         customers.addListener((obs, oldList, newList) -&gt; listView.getItems().setAll(newList)); // triggers the load
+ *
+ *         customers.invalidate(); // e.g. after a customer has been added
+ *     </pre>
+ * Calling {@link #invalidate()} reloads the value if it is being observed, otherwise the value
+ * only gets marked as stale and will be reloaded once a listener gets added. While a new value is
+ * being loaded the observers keep seeing the previous value. Like all JavaFX observables the resource
+ * has to be used on the UI thread, the values are delivered on the thread of the dispatcher of the
+ * invocations (by default the UI thread).
+ * <p>
+ * Please note that bindings register weak listeners, a binding that has been garbage collected
+ * will only be removed (and stop counting as an observer) the next time the value changes.
+ *
+ * @param <T> the type of the value
+ */
+public final class RemoteResource<T> extends ObservableValueBase<T> {
+
+    private static final Logger LOG = LogManager.getLogger(RemoteResource.class);
+
+    private final Supplier<ServiceInvocation<T>> factory;
+
+    private final List<Object> observers = new ArrayList<>();
+
+    private T value;
+
+    private boolean stale = true;
+
+    private boolean failed;
+
+    private long loadedAt;
+
+    private Duration maxAge;
+
+    private ServiceInvocation<T> invocation;
+
+    private RemoteResource(Supplier<ServiceInvocation<T>> factory) {
+        this.factory = Objects.requireNonNull(factory, "invocation factory can not be null");
+    }
+
+    /**
+     * Creates a new resource.
+     *
+     * @param factory the factory creating a new (not yet executed) invocation for each load
+     * @param <T>     the type of the value
+     * @return the resource
+     */
+    public static <T> RemoteResource<T> create(Supplier<ServiceInvocation<T>> factory) {
+        return new RemoteResource<>(factory);
+    }
+
+    /**
+     * Sets the maximum age of the value. An observed value older than this gets reloaded
+     * the next time it is requested via {@link #getValue()}. By default, values do not expire.
+     *
+     * @param maxAge the maximum age or null if values do not expire
+     * @return the resource
+     */
+    public RemoteResource<T> withMaxAge(Duration maxAge) {
+        if (maxAge != null && maxAge.isNegative()) {
+            throw new IllegalArgumentException("max age can not be negative but was " + maxAge);
+        }
+
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Returns the maximum age of the value.
+     *
+     * @return the maximum age or null if values do not expire
+     */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    @Override
+    public T getValue() {
+        if (isObserved() && !failed && isExpired()) {
+            load();
+        }
+
+        return value;
+    }
+
+    /**
+     * Marks the value as stale. The value gets reloaded immediately if it is being observed
+     * (cancelling a load that might currently be in progress), otherwise it will be reloaded
+     * once a listener gets added.
+     */
+    public void invalidate() {
+        stale = true;
+        failed = false;
+
+        if (isObserved()) {
+            cancelLoad();
+            load();
+        }
+    }
+
+    /**
+     * Returns true if the value has been invalidated or has never been loaded.
+     *
+     * @return true if the value is stale
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Returns true if at least one listener has been added to the resource.
+     *
+     * @return true if the resource is being observed
+     */
+    public boolean isObserved() {
+        return !observers.isEmpty();
+    }
+
+    // loading
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(this, "loading");
+
+    /**
+     * A flag signalling whether the value is currently being loaded.
+     *
+     * @return true if an invocation is running
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns the value of the loading property.
+     *
+     * @return true if an invocation is running
+     */
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) {
+        super.addListener(listener);
+        observerAdded(listener);
+    }
+
+    @Override
+    public void addListener(ChangeListener<? super T> listener) {
+        super.addListener(listener);
+        observerAdded(listener);
+    }
+
+    @Override
+    public void removeListener(InvalidationListener listener) {
+        super.removeListener(listener);
+        observerRemoved(listener);
+    }
+
+    @Override
+    public void removeListener(ChangeListener<? super T> listener) {
+        super.removeListener(listener);
+        observerRemoved(listener);
+    }
+
+    private void observerAdded(Object listener) {
+        observers.add(listener);
+
+        if (observers.size() == 1) {
+            failed = false;
+            if (isExpired()) {
+                load();
+            }
+        }
+    }
+
+    private void observerRemoved(Object listener) {
+        if (observers.remove(listener) && observers.isEmpty()) {
+            LOG.debug("last observer removed, releasing value");
+            cancelLoad();
+            value = null;
+            stale = true;
+        }
+    }
+
+    private boolean isExpired() {
+        if (stale) {
+            return true;
+        }
+
+        return maxAge != null && System.currentTimeMillis() - loadedAt > maxAge.toMillis();
+    }
+
+    private void load() {
+        if (invocation != null) {
+            // already loading
+            return;
+        }
+
+        ServiceInvocation<T> invocation = Objects.requireNonNull(factory.get(), "invocation factory returned null");
+        this.invocation = invocation;
+        failed = false;
+        loading.set(true);
+
+        invocation.execute().whenComplete((result, exception) -> runOnDispatchThread(invocation.getDispatcher(), () -> {
+            if (this.invocation != invocation) {
+                // cancelled or replaced by a newer invocation
+                return;
+            }
+
+            this.invocation = null;
+            loading.set(false);
+
+            if (exception == null && invocation.getState() == State.SUCCEEDED) {
+                value = result;
+                stale = false;
+                loadedAt = System.currentTimeMillis();
+                fireValueChangedEvent();
+            } else {
+                // do not retry on every call to getValue(), wait for the next invalidation or observer
+                failed = true;
+            }
+        }));
+    }
+
+    /*
+     * Failed and cancelled invocations complete their futures on the worker thread, the state
+     * of the resource must only be touched on the thread of the dispatcher.
+     */
+    private static void runOnDispatchThread(UiDispatcher dispatcher, Runnable runnable) {
+        if (dispatcher.isDispatchThread()) {
+            runnable.run();
+        } else {
+            dispatcher.dispatch(runnable);
+        }
+    }
+
+    private void cancelLoad() {
+        ServiceInvocation<T> invocation = this.invocation;
+        if (invocation != null) {
+            this.invocation = null;
+            loading.set(false);
+            invocation.cancel();
+        }
+    }
+}
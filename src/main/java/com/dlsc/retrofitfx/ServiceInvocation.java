@@ -1,7 +1,6 @@
 package com.dlsc.retrofitfx;
 
 
-import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.concurrent.Worker;
 import okhttp3.ResponseBody;
@@ -9,17 +8,30 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import retrofit2.Response;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A utility class used to invoke backend services via Retrofit on a separate thread and to
@@ -58,9 +70,19 @@ import java.util.function.Consumer;
  */
 public final class ServiceInvocation<T> implements Worker<T> {
 
-    private final Logger logger = LogManager.getLogger(ServiceInvocation.class);
+    private static final Logger LOG = LogManager.getLogger(ServiceInvocation.class);
 
-    private static final Executor EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    /*
+     * The invocation currently executed by a worker thread, used for binding child invocations
+     * to their parent (structured concurrency).
+     */
+    private static final ThreadLocal<ServiceInvocation<?>> CURRENT = new ThreadLocal<>();
+
+    private static volatile UiDispatcher defaultDispatcher = UiDispatcher.fx();
+
+    private static volatile SimulationProfile defaultSimulationProfile;
 
     private final String name;
     private final ServiceSupplier<T> service;
@@ -92,9 +114,54 @@ public final class ServiceInvocation<T> implements Worker<T> {
 
     private long delay;
 
-    private boolean cancelled;
+    /*
+     * The lifecycle of the invocation: READY -> SCHEDULED -> RUNNING -> SUCCEEDED / FAILED / CANCELLED.
+     * All transitions are done via compare-and-set so that exactly one thread decides the outcome.
+     * The state property (see Worker interface) mirrors this value on the UI thread.
+     */
+    private final AtomicReference<State> lifecycle = new AtomicReference<>(State.READY);
+
+    private final AtomicBoolean cancelHandled = new AtomicBoolean();
+
+    private UiDispatcher dispatcher;
+
+    private SimulationProfile simulationProfile;
+
+    private RateLimiter rateLimiter;
+
+    private HedgingPolicy hedgingPolicy;
+
+    private boolean composite;
+
+    private boolean structured;
+
+    private final List<ServiceInvocation<?>> children = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<Exception> childFailure = new AtomicReference<>();
+
+    private final CompletableFuture<State> finished = new CompletableFuture<>();
 
-    private boolean onCancelCalled;
+    private final Object workerLock = new Object();
+
+    private final NetworkTimings networkTimings = new NetworkTimings();
+
+    private Thread workerThread;
+
+    private final AtomicReference<String> pendingMessage = new AtomicReference<>();
+
+    private final AtomicBoolean progressUpdatePending = new AtomicBoolean();
+
+    private volatile long pendingWorkDone;
+
+    private volatile long pendingTotalWork;
+
+    private final List<InvocationListener> listeners = new CopyOnWriteArrayList<>();
+
+    /*
+     * The invocation that owns this one, e.g. the pipeline created via thenInvoke(). A cancelled
+     * owner implies that this invocation is cancelled, too.
+     */
+    private volatile ServiceInvocation<?> owner;
 
     private ServiceInvocation(String name, ServiceSupplier<T> service) {
         this.name = Objects.requireNonNull(name, "service invocation name can not be null");
@@ -115,6 +182,37 @@ public final class ServiceInvocation<T> implements Worker<T> {
         return new ServiceInvocation<>(name, supplier);
     }
 
+    /**
+     * Creates a new service invocation that streams the body of the response directly into the
+     * given file instead of loading it into memory. The data gets written into a temporary
+     * ".part" file, which will be renamed to the target file once the download is complete.
+     * The progress properties of the invocation report the number of bytes received. If a
+     * ".part" file from an earlier, interrupted attempt exists then the supplier will receive
+     * a "Range" header value for resuming the download (servers that support this answer with
+     * {@link HttpStatusCode#PARTIAL_CONTENT}). The Retrofit method should be annotated with
+     * "@Streaming", otherwise Retrofit will buffer the whole body.
+     * <pre>
+     *         &#64;Streaming
+     *         &#64;GET("documents/{id}")
+     *         Call&lt;ResponseBody&gt; download(&#64;Path("id") String id, &#64;Header("Range") String range);
+     *
+     *         ServiceInvocation.download("Download document ...", range -> myService.download(id, range).execute(), file)
+     *              .onSuccess(path -> hostServices.showDocument(path.toUri().toString()))
+     *              .execute();
+     *     </pre>
+     * Do not use hedging for downloads.
+     *
+     * @param name     the name of this invocation
+     * @param supplier the supplier returning the download response for the given range header value (which may be null)
+     * @param target   the file to write to
+     * @return a service invocation delivering the path of the downloaded file
+     */
+    public static ServiceInvocation<Path> download(String name, DownloadSupplier supplier, Path target) {
+        Objects.requireNonNull(supplier, "download supplier can not be null");
+        Objects.requireNonNull(target, "target path can not be null");
+        return selfAware(name, invocation -> FileDownload.transfer(invocation, supplier, target));
+    }
+
     private BiConsumer<String, String> getOnFailure() {
         return onFailure != null ? onFailure : onFailureDefault;
     }
@@ -158,203 +256,460 @@ public final class ServiceInvocation<T> implements Worker<T> {
     public CompletableFuture<T> execute(Executor executor) {
         Objects.requireNonNull(executor, "executor can not be null");
 
+        ServiceInvocation<?> parent = CURRENT.get();
+        if (parent != null && parent.structured && owner == null) {
+            parent.adopt(this);
+        }
+
         CompletableFuture<T> result = new CompletableFuture<>();
-        if (isCancelled()) {
+        if (isCancelled() || !lifecycle.compareAndSet(State.READY, State.SCHEDULED)) {
+            if (!isCancelled()) {
+                throw new IllegalStateException("service invocation has already been executed: " + getName());
+            }
+
             doCancel("cancelled immediately, setting completion result to null");
+            fireScheduled();
+            fireFinished(State.CANCELLED, null);
             result.complete(null); // if cancelled, we can return immediately with an empty result
             return result;
         }
 
+        InvocationRegistry.register(this);
+        fireScheduled();
+
         state.set(State.RUNNING);
         totalWork.set(1);
         running.set(true);
         progress.set(0);
 
-        executor.execute(() -> {
+        executor.execute(() -> runOnWorker(result));
+
+        return result;
+    }
 
-            if (isCancelled()) {
+    private void runOnWorker(CompletableFuture<T> result) {
+        ServiceInvocation<?> previous = CURRENT.get();
+        String threadName = attachWorkerThread();
+
+        try {
+            if (isCancelled() || !lifecycle.compareAndSet(State.SCHEDULED, State.RUNNING)) {
                 doCancel("cancelled at start of executor call execution");
+                fireFinished(State.CANCELLED, null);
+                result.complete(null);
                 return;
             }
 
+            fireStarted();
+
+            Throwable failure = null;
+            boolean logging = InvocationLog.isEnabled();
+            long startTime = -1;
+            int statusCode = 0;
+            String errorBody = null;
+            Response<T> response = null;
+
             if (onStartDefault != null) {
-                Platform.runLater(() -> {
+                runLater(() -> {
                     if (!isCancelled()) {
                         onStartDefault.accept(getName());
-                    } else {
-                        doCancel("cancelled before being able to call 'on start default' handler");
                     }
                 });
             }
 
             if (onStart != null) {
-                Platform.runLater(() -> {
+                runLater(() -> {
                     if (!isCancelled()) {
                         onStart.accept(getName());
-                    } else {
-                        doCancel("cancelled before being able to call 'on start' handler");
                     }
                 });
             }
 
-            logger.debug("executing service invocation with name: {}", getName());
+            LOG.debug("executing service invocation with name: {}", getName());
             try {
-                if (!isCancelled()) {
-                    /*
-                     * For testing or debugging purposes we can intentionally delay the
-                     * execution of this service call.
-                     */
-                    if (delay > 0) {
-                        delay();
-                    }
+                /*
+                 * For testing or debugging purposes we can intentionally delay the
+                 * execution of this service call.
+                 */
+                if (delay > 0) {
+                    delay();
+                }
 
-                    Platform.runLater(() -> {
-                        if (!isCancelled()) {
-                            message.set("Calling service");
-                        } else {
-                            doCancel("cancelled before being able to set message to 'calling service'");
-                        }
-                    });
+                /*
+                 * Apply backpressure if the UI thread can not keep up with the results
+                 * delivered by the service invocations.
+                 */
+                FxQueueMonitor.awaitCapacity(getDispatcher());
 
-                    Instant startTime = Instant.now();
+                updateMessage("Calling service");
 
-                    if (!isCancelled()) {
-                        Response<T> response = service.get();
+                checkCancelled("cancelled before the actual call to the backend");
 
-                        if (logger.isInfoEnabled() && !isCancelled()) {
-                            Duration duration = Duration.between(startTime, Instant.now());
-                            logger.info("server side call duration: {}ms, call = {}", duration.toMillis(), getName());
-                        }
+                if (logging) {
+                    startTime = System.nanoTime();
+                }
+
+                response = invokeService();
+
+                if (structured) {
+                    joinChildren();
+                }
+
+                statusCode = response.code();
 
-                        // the call to the service might have taken some time, better to check again if cancelled is true
-                        if (!isCancelled()) {
-                            if (response.isSuccessful() && !isSimulatingFailure()) {
-                                success(response);
-
-                                Platform.runLater(() -> {
-                                    // who knows when this will run, check the cancelled flag again
-                                    if (!isCancelled()) {
-                                        result.complete(response.body());
-                                    } else {
-                                        doCancel("cancelled after service invocation but before being able to set completion result to response body");
-                                        result.complete(null);
-                                    }
-                                });
-                            } else {
-                                String errorBody = null;
-                                try (ResponseBody responseBody = response.errorBody()) {
-                                    if (responseBody != null) {
-                                        errorBody = responseBody.string(); // WARNING! THIS METHOD CAN ONLY BE CALLED ONCE!!!
-                                    }
-                                }
-
-                                if (!isCancelled()) {
-                                    failure(response, errorBody);
-                                } else {
-                                    doCancel("cancelled after service invocation but before being able to handle failure and error body.");
-                                }
-
-                                Platform.runLater(() -> result.complete(null));
-                            }
-                        } else {
-                            doCancel("cancelled before processing the response from the service");
+                if (response.isSuccessful() && !isSimulatingFailure()) {
+                    /*
+                     * From here on the invocation can no longer be cancelled, the handlers
+                     * will be called exactly once.
+                     */
+                    complete(State.SUCCEEDED, "cancelled before processing the response from the service");
+                    success(response);
+                    T body = response.body();
+                    runLater(() -> result.complete(body));
+                } else {
+                    try (ResponseBody responseBody = response.errorBody()) {
+                        if (responseBody != null) {
+                            errorBody = responseBody.string(); // WARNING! THIS METHOD CAN ONLY BE CALLED ONCE!!!
                         }
-                    } else {
-                        doCancel("cancelled before the actual call to the backend");
                     }
-                } else {
-                    doCancel("cancelled before updating the status message to 'calling service'");
+
+                    complete(State.FAILED, "cancelled after service invocation but before being able to handle failure and error body");
+                    failure(response, errorBody);
+                    runLater(() -> result.complete(null));
                 }
             } catch (Exception t) {
-                logger.warn("error processing response from service", t);
-                exception(result, t);
+                State current = lifecycle.get();
+                if (current == State.SUCCEEDED || current == State.FAILED) {
+                    /*
+                     * The outcome has already been committed and one of the handlers failed,
+                     * the terminal handlers must not be dispatched a second time.
+                     */
+                    LOG.error("error when invoking the handlers of service invocation: {}", getName(), t);
+                    T body = current == State.SUCCEEDED && response != null ? response.body() : null;
+                    runLater(() -> result.complete(body));
+                } else if (isCancelled()) {
+                    doCancel(t instanceof CancellationException ? t.getMessage() : "cancelled while invoking the service: " + t.getMessage());
+                    result.complete(null);
+                } else {
+                    Exception ex = childFailureOr(t);
+                    if (lifecycle.compareAndSet(State.RUNNING, State.FAILED)) {
+                        failure = ex;
+                        exception(result, ex);
+                    } else {
+                        // cancelled after the check above
+                        doCancel("cancelled while invoking the service: " + ex.getMessage());
+                        result.complete(null);
+                    }
+                }
             } finally {
-                if (!isCancelled()) {
+                State outcome = lifecycle.get();
+                if (outcome != State.CANCELLED) {
                     doFinally();
-                } else {
-                    doCancel("cancelled before calling the 'onFinished' handlers");
                 }
+
+                if (logging) {
+                    long nanos = startTime < 0 ? -1 : System.nanoTime() - startTime;
+                    InvocationLog.log(this, outcome, statusCode, nanos, simulatingFailure ? "Simulated failure" : errorBody, failure);
+                }
+
+                fireFinished(outcome, failure);
             }
-        });
+        } finally {
+            detachWorkerThread(threadName, previous);
+        }
+    }
+
+    /*
+     * Moves the invocation from running into the given terminal state. Fails if the invocation
+     * has been cancelled in the meantime.
+     */
+    private void complete(State outcome, String cancelMessage) {
+        if (isCancelled() || !lifecycle.compareAndSet(State.RUNNING, outcome)) {
+            throw new CancellationException(cancelMessage);
+        }
+    }
+
+    /*
+     * Binds this invocation to the current worker thread. Structured invocations rename the
+     * thread after their position in the invocation tree so that it shows up in thread dumps.
+     */
+    private String attachWorkerThread() {
+        Thread thread = Thread.currentThread();
+        CURRENT.set(this);
+
+        synchronized (workerLock) {
+            workerThread = thread;
+        }
+
+        if (!structured) {
+            return null;
+        }
+
+        String threadName = thread.getName();
+        thread.setName("RetrofitFX " + getPath());
+        return threadName;
+    }
+
+    private void detachWorkerThread(String threadName, ServiceInvocation<?> previous) {
+        Thread thread = Thread.currentThread();
+
+        synchronized (workerLock) {
+            workerThread = null;
+            // do not leak an interrupt caused by the structured cancellation into a pooled thread
+            Thread.interrupted();
+        }
+
+        if (threadName != null) {
+            thread.setName(threadName);
+        }
+
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    private String getPath() {
+        ServiceInvocation<?> owner = this.owner;
+        return owner != null ? owner.getPath() + " / " + getName() : getName();
+    }
+
+    /**
+     * Makes this invocation the owner of all the invocations that get executed while its service
+     * is being invoked, i.e. on its worker thread, or that get explicitly forked via
+     * {@link #fork(ServiceInvocation)}. The owner delivers its own result only after all of
+     * these child invocations are done. If one of the children fails then the remaining children
+     * get cancelled and the owner fails as well. Cancelling the owner immediately cancels the
+     * whole tree of invocations and interrupts their worker threads so that blocking calls return
+     * promptly. The worker threads are named after the path of the invocation within the tree,
+     * hence the hierarchy is visible in thread dumps.
+     * <pre>
+     *         ServiceInvocation.create("Load dashboard ...", () -> {
+     *                  ServiceInvocation.create("Load news ...", () -> myService.loadNews().execute()).onSuccess(news::setAll).execute();
+     *                  ServiceInvocation.create("Load mails ...", () -> myService.loadMails().execute()).onSuccess(mails::setAll).execute();
+     *                  return myService.loadDashboard().execute();
+     *              })
+     *              .withStructuredConcurrency()
+     *              .execute();
+     *     </pre>
+     *
+     * @return the service invocation
+     */
+    public ServiceInvocation<T> withStructuredConcurrency() {
+        structured = true;
+        return this;
+    }
+
+    /**
+     * Returns true if this invocation owns the invocations it starts, see {@link #withStructuredConcurrency()}.
+     *
+     * @return true if structured concurrency is enabled
+     */
+    public boolean isStructuredConcurrency() {
+        return structured;
+    }
+
+    /**
+     * Executes the given invocation as a child of this invocation, see {@link #withStructuredConcurrency()}.
+     * Calling this method enables structured concurrency for this invocation.
+     *
+     * @param child the child invocation
+     * @param <U>   the type of the result of the child
+     * @return the completable future of the child
+     */
+    public <U> CompletableFuture<U> fork(ServiceInvocation<U> child) {
+        Objects.requireNonNull(child, "child invocation can not be null");
+        structured = true;
+        adopt(child);
+        return child.execute();
+    }
+
+    private void adopt(ServiceInvocation<?> child) {
+        child.owner = this;
+        child.structured = true;
+        children.add(child);
 
         if (isCancelled()) {
-            result.complete(null);
+            child.cancel();
         }
-        return result;
     }
 
-    private void doCancel(String msg) {
-        if (onCancelCalled) {
+    /*
+     * Waits for all children to finish, like StructuredTaskScope.join().
+     */
+    private void joinChildren() throws Exception {
+        for (ServiceInvocation<?> child : children) {
+            awaitStep(child.finished);
+        }
+
+        Exception failure = childFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+     * Called when a child failed: cancels the siblings and interrupts this invocation's worker
+     * thread, like StructuredTaskScope.ShutdownOnFailure.
+     */
+    private void shutdown(ServiceInvocation<?> child, Throwable cause) {
+        if (!childFailure.compareAndSet(null, new IllegalStateException("child invocation '" + child.getName() + "' failed", cause))) {
             return;
         }
 
-        onCancelCalled = true;
+        LOG.debug("child '{}' of service invocation '{}' failed, shutting down", child.getName(), getName());
 
-        if (onCancelledDefault != null) {
+        for (ServiceInvocation<?> sibling : children) {
+            if (sibling != child) {
+                sibling.cancel();
+            }
+        }
+
+        interruptWorker();
+    }
+
+    private Exception childFailureOr(Exception exception) {
+        Exception failure = childFailure.get();
+        return failure != null ? failure : exception;
+    }
+
+    private void interruptWorker() {
+        synchronized (workerLock) {
+            if (workerThread != null) {
+                workerThread.interrupt();
+            }
+        }
+    }
+
+    private void fireScheduled() {
+        for (InvocationListener listener : listeners) {
             try {
-                logger.trace("invoking onCancelledDefault handler");
-                onCancelledDefault.accept(name, msg);
+                listener.scheduled(this);
             } catch (Exception e) {
-                logger.error("error when trying to execute ‘on cancelled default' of service invocation: {}", getName(), e);
+                LOG.error("error when notifying listener about scheduling of service invocation: {}", getName(), e);
             }
         }
+    }
 
-        if (onCancelled != null) {
+    private void fireStarted() {
+        for (InvocationListener listener : listeners) {
             try {
-                logger.trace("invoking onCancelled handler");
-                onCancelled.accept(name, msg);
+                listener.started(this);
             } catch (Exception e) {
-                logger.error("error when trying to execute ‘on cancelled' of service invocation: {}", getName(), e);
+                LOG.error("error when notifying listener about start of service invocation: {}", getName(), e);
             }
         }
     }
 
-    private void doFinally() {
-        Platform.runLater(() -> {
-            if (!isCancelled()) {
-                running.set(false);
-                progress.set(1);
+    private void fireFinished(State outcome, Throwable failure) {
+        ServiceInvocation<?> owner = this.owner;
+        if (outcome == State.FAILED && owner != null && owner.structured && owner.children.contains(this)) {
+            owner.shutdown(this, failure);
+        }
+
+        finished.complete(outcome);
+
+        InvocationRegistry.deregister(this);
+
+        for (InvocationListener listener : listeners) {
+            try {
+                listener.finished(this, outcome, failure);
+            } catch (Exception e) {
+                LOG.error("error when notifying listener about end of service invocation: {}", getName(), e);
             }
+        }
+    }
+
+    /*
+     * Listeners get notified on the worker thread, see InvocationListener.
+     */
+    void addListener(InvocationListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener can not be null"));
+    }
+
+    void removeListener(InvocationListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void doCancel(String msg) {
+        // the invocation might have been cancelled via its owner, make the state reflect this
+        State current;
+        do {
+            current = lifecycle.get();
+        } while (current != State.CANCELLED && !isTerminal(current) && !lifecycle.compareAndSet(current, State.CANCELLED));
+
+        if (!cancelHandled.compareAndSet(false, true)) {
+            return;
+        }
+
+        runLater(() -> {
+            state.set(State.CANCELLED);
+            running.set(false);
+
+            if (onCancelledDefault != null) {
+                try {
+                    LOG.trace("invoking onCancelledDefault handler");
+                    onCancelledDefault.accept(name, msg);
+                } catch (Exception e) {
+                    LOG.error("error when trying to execute ‘on cancelled default' of service invocation: {}", getName(), e);
+                }
+            }
+
+            if (onCancelled != null) {
+                try {
+                    LOG.trace("invoking onCancelled handler");
+                    onCancelled.accept(name, msg);
+                } catch (Exception e) {
+                    LOG.error("error when trying to execute ‘on cancelled' of service invocation: {}", getName(), e);
+                }
+            }
+        });
+    }
+
+    private static boolean isTerminal(State state) {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    private void doFinally() {
+        runLater(() -> {
+            running.set(false);
+            progress.set(1);
         });
 
-        if (onFinallyDefault != null && !isCancelled()) {
+        if (onFinallyDefault != null) {
             try {
-                logger.trace("invoking onFinallyDefault handler");
+                LOG.trace("invoking onFinallyDefault handler");
                 runAndWait(onFinallyDefault);
             } catch (Exception e) {
-                logger.error("error when trying to execute ‘on finally default' of service invocation: {}", getName(), e);
+                LOG.error("error when trying to execute ‘on finally default' of service invocation: {}", getName(), e);
             }
         }
 
-        if (onFinally != null && !isCancelled()) {
+        if (onFinally != null) {
             try {
-                logger.trace("invoking onFinally handler");
+                LOG.trace("invoking onFinally handler");
                 runAndWait(onFinally);
             } catch (Exception e) {
-                logger.error("error when trying to execute ‘on finally' of service invocation: {}", getName(), e);
+                LOG.error("error when trying to execute ‘on finally' of service invocation: {}", getName(), e);
             }
         }
     }
 
     private void exception(CompletableFuture<T> result, Exception t) {
-        logger.error("error when trying to invoke the service: {}", getName(), t);
-
-        Platform.runLater(() -> {
-            if (!isCancelled()) {
-                state.set(State.FAILED);
-                exception.set(t);
-                message.set("Server-side error");
-            }
+        runLater(() -> {
+            state.set(State.FAILED);
+            exception.set(t);
+            message.set("Server-side error");
         });
 
         BiConsumer<String, Exception> onExceptionHandler = getOnException();
 
         if (onExceptionHandler != null) {
             try {
-                logger.trace("invoking exception handler");
+                LOG.trace("invoking exception handler");
                 runAndWait(() -> onExceptionHandler.accept(name, t));
             } catch (Exception e) {
-                logger.error("error when trying to propagate error message from service invocation: {}", getName(), e);
+                LOG.error("error when trying to propagate error message from service invocation: {}", getName(), e);
             }
         }
 
@@ -362,11 +717,9 @@ public final class ServiceInvocation<T> implements Worker<T> {
     }
 
     private void failure(Response<T> response, String errorBody) throws ExecutionException, InterruptedException {
-        Platform.runLater(() -> {
-            if (!isCancelled()) {
-                message.set("Call was not successful");
-                state.set(State.FAILED);
-            }
+        runLater(() -> {
+            message.set("Call was not successful");
+            state.set(State.FAILED);
         });
 
         int code = response.code();
@@ -375,34 +728,20 @@ public final class ServiceInvocation<T> implements Worker<T> {
          * First, check if there is any specific handler for the given status code and invoke it.
          */
         HttpStatusCode httpStatusCode = HttpStatusCode.fromStatusCode(code);
-        if (httpStatusCode != null && !isCancelled()) {
+        if (httpStatusCode != null) {
 
             String errorMessage = simulatingFailure ? "Simulated failure" : (errorBody == null || errorBody.isBlank() ? httpStatusCode.getReasonPhrase() : errorBody);
 
-            logger.error("service call was not successful: {} {} {}", code, errorMessage, response);
-
             BiConsumer<String, String> statusCodeConsumer = getOnStatusCode(httpStatusCode);
             if (statusCodeConsumer != null) {
-                logger.trace("invoking onStatusCode handler for status code {}", code);
-                Platform.runLater(() -> {
-                    if (!isCancelled()) {
-                        statusCodeConsumer.accept(name, errorMessage);
-                    }
-                });
+                LOG.trace("invoking onStatusCode handler for status code {}", code);
+                runLater(() -> statusCodeConsumer.accept(name, errorMessage));
             } else if (onAnyStatusCode != null) {
-                logger.trace("invoking onAnyStatusCode for status code {}", code);
-                Platform.runLater(() -> {
-                    if (!isCancelled()) {
-                        onAnyStatusCode.accept(name, httpStatusCode);
-                    }
-                });
+                LOG.trace("invoking onAnyStatusCode for status code {}", code);
+                runLater(() -> onAnyStatusCode.accept(name, httpStatusCode));
             } else if (onAnyStatusCodeDefault != null) {
-                logger.trace("invoking onAnyStatusCodeDefault for status code {}", code);
-                Platform.runLater(() -> {
-                    if (!isCancelled()) {
-                        onAnyStatusCodeDefault.accept(name, httpStatusCode);
-                    }
-                });
+                LOG.trace("invoking onAnyStatusCodeDefault for status code {}", code);
+                runLater(() -> onAnyStatusCodeDefault.accept(name, httpStatusCode));
             }
         }
 
@@ -412,7 +751,7 @@ public final class ServiceInvocation<T> implements Worker<T> {
 
         if (onFailureHandler != null) {
             runAndWait(() -> {
-                logger.trace("invoking failure handler");
+                LOG.trace("invoking failure handler");
                 onFailureHandler.accept(name, errorMessage);
             });
         } else {
@@ -420,18 +759,16 @@ public final class ServiceInvocation<T> implements Worker<T> {
             BiConsumer<String, Response<T>> onFailureDetailedHandler = getOnFailureDetailed();
 
             if (onFailureDetailedHandler != null) {
-                logger.trace("invoking detailed failure handler");
+                LOG.trace("invoking detailed failure handler");
                 runAndWait(() -> onFailureDetailedHandler.accept(name, response));
             }
         }
     }
 
     private void success(Response<T> response) throws ExecutionException, InterruptedException {
-        Platform.runLater(() -> {
-            if (!isCancelled()) {
-                message.set("Call was successful");
-                state.set(State.SUCCEEDED);
-            }
+        runLater(() -> {
+            message.set("Call was successful");
+            state.set(State.SUCCEEDED);
         });
 
         /*
@@ -441,12 +778,8 @@ public final class ServiceInvocation<T> implements Worker<T> {
         if (httpStatusCode != null) {
             BiConsumer<String, String> onStatusCode = getOnStatusCode(httpStatusCode);
             if (onStatusCode != null) {
-                logger.trace("invoking status code handler for status code {}", response.code());
-                Platform.runLater(() -> {
-                    if (!isCancelled()) {
-                        onStatusCode.accept(name, response.message());
-                    }
-                });
+                LOG.trace("invoking status code handler for status code {}", response.code());
+                runLater(() -> onStatusCode.accept(name, response.message()));
             }
         }
 
@@ -454,7 +787,7 @@ public final class ServiceInvocation<T> implements Worker<T> {
          * Second, check if there is a generic handler for general success and invoke it.
          */
         if (onSuccess != null) {
-            logger.trace("invoking onSuccess handler");
+            LOG.trace("invoking onSuccess handler");
             runAndWait(() -> {
                 if (response.code() == 204) {
                     onSuccess.accept(null);
@@ -463,16 +796,461 @@ public final class ServiceInvocation<T> implements Worker<T> {
                 }
             });
         } else if (onSuccessDetailed != null) {
-            logger.trace("invoking detailed success handler");
+            LOG.trace("invoking detailed success handler");
             runAndWait(() -> onSuccessDetailed.accept(response));
         }
     }
 
+    /**
+     * Creates a new service invocation that first invokes this invocation's service and then
+     * passes the result to the given function in order to obtain the next invocation, whose
+     * service will then be invoked as well. The entire pipeline runs on the worker thread and
+     * only the handlers of the returned invocation will be called on the UI thread, once, when
+     * the whole pipeline has finished. The handlers of this invocation and of the invocations
+     * returned by the function are not used, but their delays and simulated failures are.
+     * <p>
+     * If one of the steps is not successful then the pipeline stops and the returned invocation
+     * fails with the response of that step. Cancelling the returned invocation also cancels the
+     * steps of the pipeline.
+     * <pre>
+     *         ServiceInvocation.create("Load user ...", () -> userService.getUser(id).execute())
+     *              .thenInvoke(user -> ServiceInvocation.create("Load orders ...", () -> orderService.getOrders(user).execute()))
+     *              .onSuccess(orders -> listView.getItems().setAll(orders))
+     *              .execute();
+     *     </pre>
+     *
+     * @param next the function returning the next invocation based on the result of this invocation
+     * @param <U>  the type of the result object of the next invocation
+     * @return a new service invocation representing the whole pipeline
+     */
+    public <U> ServiceInvocation<U> thenInvoke(Function<? super T, ServiceInvocation<U>> next) {
+        Objects.requireNonNull(next, "next function can not be null");
+
+        ServiceInvocation<T> upstream = this;
+
+        return pipeline(name, pipeline -> {
+            Response<T> response = pipeline.invokeStep(upstream);
+            if (!response.isSuccessful()) {
+                return failedResponse(response);
+            }
+
+            ServiceInvocation<U> nextInvocation = Objects.requireNonNull(next.apply(response.body()), "next invocation can not be null");
+            return pipeline.invokeStep(nextInvocation);
+        });
+    }
+
+    /**
+     * Creates a new service invocation that invokes the service of this invocation and the
+     * service of the given invocation in parallel on worker threads and combines both results
+     * with the given function (also on a worker thread). Only the handlers of the returned
+     * invocation will be called on the UI thread, the delays and simulated failures of both
+     * invocations are applied. If one of the two calls is not successful then the returned
+     * invocation fails with the response of that call right away, the other call gets cancelled
+     * (and awaited) instead of being left running. Cancelling the returned invocation also
+     * cancels both of the combined invocations.
+     *
+     * @param other    the invocation to run in parallel to this invocation
+     * @param combiner the function used for combining the two results
+     * @param <U>      the type of the result object of the other invocation
+     * @param <R>      the type of the combined result
+     * @return a new service invocation representing both calls
+     */
+    public <U, R> ServiceInvocation<R> thenCombine(ServiceInvocation<U> other, BiFunction<? super T, ? super U, ? extends R> combiner) {
+        Objects.requireNonNull(other, "other invocation can not be null");
+        Objects.requireNonNull(combiner, "combiner can not be null");
+
+        ServiceInvocation<T> upstream = this;
+
+        return pipeline(name, pipeline -> {
+            AtomicReference<Thread> upstreamThread = new AtomicReference<>();
+            AtomicReference<Thread> otherThread = new AtomicReference<>();
+            CompletableFuture<Response<T>> upstreamResponse = pipeline.forkStep(upstream, upstreamThread);
+            CompletableFuture<Response<U>> otherResponse = pipeline.forkStep(other, otherThread);
+
+            // wait until both steps succeeded or until the first one did not, whichever comes first
+            CompletableFuture<Void> decided = new CompletableFuture<>();
+            BiConsumer<Response<?>, Throwable> failFast = (response, ex) -> {
+                if (ex != null || !response.isSuccessful()) {
+                    decided.complete(null);
+                }
+            };
+            upstreamResponse.whenComplete(failFast);
+            otherResponse.whenComplete(failFast);
+            CompletableFuture.allOf(upstreamResponse, otherResponse).whenComplete((ignored, ex) -> decided.complete(null));
+
+            try {
+                awaitStep(decided);
+            } catch (InterruptedException e) {
+                pipeline.shutdownStep(upstream, upstreamThread, upstreamResponse, e);
+                pipeline.shutdownStep(other, otherThread, otherResponse, e);
+                throw e;
+            }
+
+            /*
+             * The remaining step must not keep running unobserved, it gets cancelled and joined
+             * as soon as the other step does not produce a result that can be combined.
+             */
+            if (isUnsuccessful(upstreamResponse)) {
+                return pipeline.failCombined(upstreamResponse, other, otherThread, otherResponse);
+            }
+
+            if (isUnsuccessful(otherResponse)) {
+                return pipeline.failCombined(otherResponse, upstream, upstreamThread, upstreamResponse);
+            }
+
+            Response<T> response = upstreamResponse.join();
+            Response<U> secondResponse = otherResponse.join();
+
+            pipeline.checkCancelled("cancelled before combining the results");
+            return Response.success(combiner.apply(response.body(), secondResponse.body()), response.raw());
+        });
+    }
+
+    /**
+     * Creates a new service invocation that transforms the result of this invocation with the
+     * given function before it gets delivered to the handlers. The function runs on the worker
+     * thread so that expensive work like sorting, grouping, or converting DTOs into view models
+     * does not block the UI thread. Only the transformed result will be passed to the handlers of
+     * the returned invocation. See {@link Transformations} for functions that can process large
+     * collections in parallel.
+     * <pre>
+     *         ServiceInvocation.create("Load customers ...", () -> myService.getAllCustomers().execute())
+     *              .map(Transformations.parallelMap(CustomerBean::new))
+     *              .onSuccess(beans -> tableView.getItems().setAll(beans))
+     *              .execute();
+     *     </pre>
+     *
+     * @param mapper the function used for transforming the result
+     * @param <R>    the type of the transformed result
+     * @return a new service invocation delivering the transformed result
+     */
+    public <R> ServiceInvocation<R> map(Function<? super T, ? extends R> mapper) {
+        return map(mapper, null);
+    }
+
+    /**
+     * Creates a new service invocation that transforms the result of this invocation with the
+     * given function on the given executor (e.g. a dedicated pool for CPU intensive work) before it
+     * gets delivered to the handlers. See {@link #map(Function)}.
+     *
+     * @param mapper   the function used for transforming the result
+     * @param executor the executor used for running the function, or null to run it on the worker thread
+     * @param <R>      the type of the transformed result
+     * @return a new service invocation delivering the transformed result
+     */
+    public <R> ServiceInvocation<R> map(Function<? super T, ? extends R> mapper, Executor executor) {
+        Objects.requireNonNull(mapper, "mapper can not be null");
+
+        ServiceInvocation<T> upstream = this;
+
+        return pipeline(name, pipeline -> {
+            Response<T> response = pipeline.invokeStep(upstream);
+            if (!response.isSuccessful()) {
+                return failedResponse(response);
+            }
+
+            T body = response.body();
+            if (body == null) {
+                return Response.success(null, response.raw());
+            }
+
+            pipeline.checkCancelled("cancelled before transforming the result");
+
+            R transformed;
+            if (executor == null) {
+                transformed = mapper.apply(body);
+            } else {
+                transformed = awaitStep(CompletableFuture.supplyAsync(() -> mapper.apply(body), executor));
+            }
+
+            return Response.success(transformed, response.raw());
+        });
+    }
+
+    /*
+     * Invokes the service of the given pipeline step directly on the current (worker) thread,
+     * bypassing all of the step's handlers but applying its delay and simulated failure.
+     */
+    private <S> Response<S> invokeStep(ServiceInvocation<S> step) throws Exception {
+        step.owner = this;
+        checkCancelled("cancelled before invoking pipeline step '" + step.getName() + "'");
+
+        if (step.delay > 0) {
+            step.delay();
+            checkCancelled("cancelled while delaying pipeline step '" + step.getName() + "'");
+        }
+
+        LOG.debug("invoking pipeline step '{}' of service invocation: {}", step.getName(), getName());
+        Response<S> response = step.invokeService();
+
+        if (step.isSimulatingFailure() && response.isSuccessful()) {
+            LOG.debug("simulating failure of pipeline step '{}' of service invocation: {}", step.getName(), getName());
+            discard(response);
+            return Response.error(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), ResponseBody.create("Simulated failure", null));
+        }
+
+        return response;
+    }
+
+    /*
+     * Invokes the given pipeline step on a separate worker thread, the thread is published via
+     * the given reference for as long as the step is running so that it can be interrupted.
+     */
+    private <S> CompletableFuture<Response<S>> forkStep(ServiceInvocation<S> step, AtomicReference<Thread> thread) {
+        CompletableFuture<Response<S>> result = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            thread.set(Thread.currentThread());
+            // bind the pipeline to this thread, too, e.g. for collecting the network timings
+            CURRENT.set(this);
+            try {
+                // the step might have been shut down before this thread became visible
+                step.checkCancelled("cancelled before invoking parallel step '" + step.getName() + "'");
+                result.complete(invokeStep(step));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                CURRENT.remove();
+                thread.set(null);
+            }
+        });
+        return result;
+    }
+
+    private static boolean isUnsuccessful(CompletableFuture<? extends Response<?>> step) {
+        return step.isDone() && (step.isCompletedExceptionally() || !step.join().isSuccessful());
+    }
+
+    /*
+     * Shuts down the sibling of a failed parallel step and then fails with the outcome of the
+     * failed step.
+     */
+    private <S> Response<S> failCombined(CompletableFuture<? extends Response<?>> failedStep, ServiceInvocation<?> sibling, AtomicReference<Thread> siblingThread, CompletableFuture<?> siblingResult) throws Exception {
+        Response<?> response;
+        try {
+            response = awaitStep(failedStep);
+        } catch (Exception e) {
+            shutdownStep(sibling, siblingThread, siblingResult, e);
+            throw e;
+        }
+
+        shutdownStep(sibling, siblingThread, siblingResult, null);
+        return failedResponse(response);
+    }
+
+    private void checkCancelled(String msg) {
+        if (isCancelled()) {
+            throw new CancellationException(msg);
+        }
+    }
+
+    /*
+     * Cancels a step running in parallel, interrupts its thread and waits until it is done. A
+     * failure of the step gets attached to the given cause (if any) so that it does not get lost.
+     */
+    private void shutdownStep(ServiceInvocation<?> step, AtomicReference<Thread> thread, CompletableFuture<?> result, Exception cause) {
+        step.cancel();
+
+        Thread stepThread = thread.get();
+        if (stepThread != null) {
+            stepThread.interrupt();
+        }
+
+        try {
+            // a response that arrived in the meantime is not needed anymore
+            if (result.get() instanceof Response<?> response) {
+                discard(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // get() does not wrap cancellations, the step noticed the shutdown before calling its service
+            LOG.debug("parallel step '{}' of service invocation '{}' got cancelled", step.getName(), getName());
+        } catch (ExecutionException e) {
+            Throwable failure = e.getCause();
+            if (cause != null && failure != cause) {
+                cause.addSuppressed(failure);
+            } else {
+                LOG.debug("parallel step '{}' of service invocation '{}' failed after being cancelled", step.getName(), getName(), failure);
+            }
+        }
+    }
+
+    private static <S> S awaitStep(CompletableFuture<S> step) throws Exception {
+        try {
+            return step.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception ex) {
+                throw ex;
+            }
+            throw e;
+        }
+    }
+
+    private static <S> Response<S> failedResponse(Response<?> response) {
+        return Response.error(response.errorBody(), response.raw());
+    }
+
+    private static <S> ServiceInvocation<S> pipeline(String name, PipelineSupplier<S> supplier) {
+        ServiceInvocation<S> pipeline = selfAware(name, supplier);
+        pipeline.composite = true;
+        return pipeline;
+    }
+
+    private static <S> ServiceInvocation<S> selfAware(String name, PipelineSupplier<S> supplier) {
+        AtomicReference<ServiceInvocation<S>> invocation = new AtomicReference<>();
+        invocation.set(create(name, () -> supplier.get(invocation.get())));
+        return invocation.get();
+    }
+
+    private Response<T> invokeService() throws Exception {
+        if (composite) {
+            // the steps of a composed invocation apply their own rate limiters and profiles
+            return service.get();
+        }
+
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.acquire();
+            checkCancelled("cancelled while waiting for rate limiter '" + limiter.getName() + "'");
+        }
+
+        ServiceSupplier<T> supplier = service;
+
+        SimulationProfile profile = getSimulationProfile();
+        if (profile != null) {
+            LOG.trace("invoking service with simulation profile");
+            supplier = () -> profile.invoke(service);
+        }
+
+        Response<T> response;
+
+        HedgingPolicy policy = hedgingPolicy;
+        if (policy != null) {
+            // latencies are only needed (and tracked) for determining the hedging delay
+            LatencyTracker latencyTracker = LatencyTracker.forName(policy.getKey() != null ? policy.getKey() : name);
+            response = invokeHedged(supplier, latencyTracker, limiter);
+        } else {
+            response = supplier.get();
+        }
+
+        if (limiter != null) {
+            limiter.update(response);
+        }
+
+        return response;
+    }
+
+    /*
+     * Sends a second request if the first one takes longer than usual and returns whichever
+     * response arrives first. The other request gets cancelled by interrupting its thread. The
+     * hedge needs its own permit of the rate limiter and is skipped if none is available right
+     * away. Only the duration of the attempt that decides the outcome gets recorded, the hedge
+     * delay and the time spent cancelling the other attempt are not part of it.
+     */
+    private Response<T> invokeHedged(ServiceSupplier<T> supplier, LatencyTracker latencyTracker, RateLimiter limiter) throws Exception {
+        HedgingPolicy.earnBudget();
+
+        long hedgeDelay = hedgingPolicy.getHedgeDelay(latencyTracker);
+        if (hedgeDelay < 0) {
+            long startTime = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                latencyTracker.record(System.nanoTime() - startTime);
+            }
+        }
+
+        CompletableFuture<Response<T>> winner = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+
+        Future<?> primary = EXECUTOR.submit(() -> attempt(supplier, winner, attempts, latencyTracker));
+        Future<?> hedge = null;
+
+        try {
+            try {
+                return winner.get(hedgeDelay, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // the first request is slow, continue below
+            } catch (ExecutionException e) {
+                return awaitStep(winner);
+            }
+
+            if (!isCancelled() && HedgingPolicy.trySpendBudget() && (limiter == null || limiter.tryAcquire())) {
+                LOG.debug("no response after {}ms, sending hedged request for service invocation: {}", hedgeDelay, getName());
+                attempts.incrementAndGet();
+                hedge = EXECUTOR.submit(() -> attempt(supplier, winner, attempts, latencyTracker));
+            }
+
+            return awaitStep(winner);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    private void attempt(ServiceSupplier<T> supplier, CompletableFuture<Response<T>> winner, AtomicInteger attempts, LatencyTracker latencyTracker) {
+        CURRENT.set(this);
+        long startTime = System.nanoTime();
+        try {
+            Response<T> response = supplier.get();
+            if (winner.complete(response)) {
+                latencyTracker.record(System.nanoTime() - startTime);
+            } else {
+                LOG.trace("discarding response of losing request of service invocation: {}", getName());
+                discard(response);
+            }
+        } catch (Exception e) {
+            // only fail if no other request can deliver a response anymore
+            if (attempts.decrementAndGet() == 0 && winner.completeExceptionally(e)) {
+                latencyTracker.record(System.nanoTime() - startTime);
+            }
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    private static void discard(Response<?> response) {
+        ResponseBody errorBody = response.errorBody();
+        if (errorBody != null) {
+            errorBody.close();
+        }
+
+        if (response.body() instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing we can do about it, the response is not needed anymore
+            }
+        }
+    }
+
     private void delay() throws InterruptedException {
-        logger.trace("delaying service call, millis = {}", delay);
+        LOG.trace("delaying service call, millis = {}", delay);
         Thread.sleep(delay);
     }
 
+    /**
+     * Returns the invocation that is currently being executed by the calling worker thread.
+     *
+     * @return the current invocation or null if not called on a worker thread
+     */
+    static ServiceInvocation<?> current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns the network phase timings and the payload sizes of the HTTP calls made by this
+     * invocation. The values are only collected if the {@link InvocationEventListener} has been
+     * registered with the OkHttp client.
+     *
+     * @return the network timings
+     */
+    public NetworkTimings getNetworkTimings() {
+        return networkTimings;
+    }
+
     /**
      * Returns the name of the service invocation.
      *
@@ -518,6 +1296,149 @@ public final class ServiceInvocation<T> implements Worker<T> {
         return simulatingFailure;
     }
 
+    /**
+     * Sets the dispatcher used by this invocation for calling its handlers and updating its
+     * properties on the UI thread. See {@link #setDefaultDispatcher(UiDispatcher)}.
+     *
+     * @param dispatcher the dispatcher
+     * @return the service invocation
+     */
+    public ServiceInvocation<T> withDispatcher(UiDispatcher dispatcher) {
+        this.dispatcher = Objects.requireNonNull(dispatcher, "dispatcher can not be null");
+        return this;
+    }
+
+    /**
+     * Returns the dispatcher used by this invocation for calling its handlers and updating its properties.
+     *
+     * @return the dispatcher of this invocation or the default dispatcher
+     */
+    public UiDispatcher getDispatcher() {
+        return dispatcher != null ? dispatcher : defaultDispatcher;
+    }
+
+    /**
+     * Sets the dispatcher used by all service invocations that do not have their own dispatcher.
+     * The default is the JavaFX application thread, see {@link UiDispatcher#fx()}.
+     *
+     * @param dispatcher the new default dispatcher
+     */
+    public static void setDefaultDispatcher(UiDispatcher dispatcher) {
+        defaultDispatcher = Objects.requireNonNull(dispatcher, "dispatcher can not be null");
+    }
+
+    /**
+     * Returns the dispatcher used by all service invocations that do not have their own dispatcher.
+     *
+     * @return the default dispatcher
+     */
+    public static UiDispatcher getDefaultDispatcher() {
+        return defaultDispatcher;
+    }
+
+    /**
+     * Simulates the behaviour of the backend according to the given profile, e.g. in order to
+     * load-test the user interface. See {@link #setDefaultSimulationProfile(SimulationProfile)}.
+     *
+     * @param profile the simulation profile, or null to use the default profile
+     * @return the service invocation
+     */
+    public ServiceInvocation<T> withSimulationProfile(SimulationProfile profile) {
+        this.simulationProfile = profile;
+        return this;
+    }
+
+    /**
+     * Returns the simulation profile used by this invocation.
+     *
+     * @return the profile of this invocation or the default profile, or null if none is set
+     */
+    public SimulationProfile getSimulationProfile() {
+        return simulationProfile != null ? simulationProfile : defaultSimulationProfile;
+    }
+
+    /*
+     * Used by the invocation group, only applies if this invocation has no profile of its own.
+     */
+    void applyGroupSimulationProfile(SimulationProfile profile) {
+        if (simulationProfile == null) {
+            simulationProfile = profile;
+        }
+    }
+
+    /**
+     * Makes the invocation take a permit from the given rate limiter before calling the backend.
+     * Depending on the limiter the invocation will either wait for a permit or fail with a
+     * {@link java.util.concurrent.RejectedExecutionException} (passed to the exception handlers).
+     *
+     * @param rateLimiter the rate limiter, or null for no rate limiting
+     * @return the service invocation
+     * @see RateLimiter#forKey(String, double, int)
+     */
+    public ServiceInvocation<T> withRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Returns the rate limiter used by this invocation.
+     *
+     * @return the rate limiter or null
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Enables hedged requests with the default policy. Only use this for idempotent calls,
+     * see {@link HedgingPolicy}.
+     *
+     * @return the service invocation
+     */
+    public ServiceInvocation<T> withHedging() {
+        return withHedging(HedgingPolicy.create());
+    }
+
+    /**
+     * Enables hedged requests: if the backend does not answer as fast as usual then a second,
+     * identical request will be sent and the first response wins. Only use this for idempotent
+     * calls as the service supplier will be invoked twice, see {@link HedgingPolicy}.
+     *
+     * @param policy the hedging policy, or null to disable hedging
+     * @return the service invocation
+     */
+    public ServiceInvocation<T> withHedging(HedgingPolicy policy) {
+        this.hedgingPolicy = policy;
+        return this;
+    }
+
+    /*
+     * Used by the invocation group, only applies if this invocation has no rate limiter of its own.
+     */
+    void applyGroupRateLimiter(RateLimiter limiter) {
+        if (rateLimiter == null) {
+            rateLimiter = limiter;
+        }
+    }
+
+    /**
+     * Sets the simulation profile used by all service invocations that do not have their own profile.
+     *
+     * @param profile the profile, or null to turn off the simulation
+     */
+    public static void setDefaultSimulationProfile(SimulationProfile profile) {
+        defaultSimulationProfile = profile;
+    }
+
+    /**
+     * Returns the simulation profile used by all service invocations that do not have their own profile.
+     *
+     * @return the default profile, or null if none is set
+     */
+    public static SimulationProfile getDefaultSimulationProfile() {
+        return defaultSimulationProfile;
+    }
+
     /**
      * A consumer that will be invoked first when the {@link #execute()} method gets invoked.
      *
@@ -740,9 +1661,59 @@ public final class ServiceInvocation<T> implements Worker<T> {
         return this;
     }
 
+    private void runLater(Runnable runnable) {
+        FxQueueMonitor.runLater(getDispatcher(), runnable);
+    }
+
+    /*
+     * Message updates are cosmetic. They get coalesced (only the latest message will be shown) and
+     * skipped entirely while the UI thread is saturated so that results and handlers get priority.
+     */
+    private void updateMessage(String msg) {
+        if (FxQueueMonitor.isSaturated(getDispatcher())) {
+            LOG.trace("UI thread saturated, skipping message update: {}", msg);
+            return;
+        }
+
+        if (pendingMessage.getAndSet(msg) == null) {
+            runLater(() -> {
+                String latestMessage = pendingMessage.getAndSet(null);
+                if (!isCancelled()) {
+                    message.set(latestMessage);
+                }
+            });
+        }
+    }
+
+    /*
+     * Progress updates get coalesced in the same way as the message updates.
+     */
+    void updateProgress(long done, long total) {
+        pendingWorkDone = done;
+        pendingTotalWork = total;
+
+        if (progressUpdatePending.compareAndSet(false, true)) {
+            runLater(() -> {
+                progressUpdatePending.set(false);
+                if (!isCancelled()) {
+                    long latestDone = pendingWorkDone;
+                    long latestTotal = pendingTotalWork;
+                    workDone.set(latestDone);
+                    totalWork.set(latestTotal);
+                    progress.set(latestTotal > 0 ? (double) latestDone / latestTotal : -1);
+                }
+            });
+        }
+    }
+
     private void runAndWait(Runnable runnable) throws ExecutionException, InterruptedException {
+        if (getDispatcher().isDispatchThread()) {
+            runnable.run();
+            return;
+        }
+
         CompletableFuture<Void> result = new CompletableFuture<>();
-        Platform.runLater(() -> {
+        runLater(() -> {
             try {
                 runnable.run();
                 result.complete(null);
@@ -894,13 +1865,28 @@ public final class ServiceInvocation<T> implements Worker<T> {
     /**
      * Marks the invocation as cancelled. Please be aware that the invocation will still execute
      * once started. The "cancelled" flag can only be used by the client to check whether the application
-     * is still interested in the result.
+     * is still interested in the result. Invocations using structured concurrency also cancel their
+     * children and interrupt their worker threads, see {@link #withStructuredConcurrency()}.
+     * An invocation that has already succeeded or failed can no longer be cancelled, its handlers
+     * are guaranteed to be called exactly once.
      *
-     * @return always true
+     * @return true if the invocation is cancelled, false if it had already succeeded or failed
      */
     @Override
     public boolean cancel() {
-        cancelled = true;
+        State current;
+        do {
+            current = lifecycle.get();
+            if (isTerminal(current)) {
+                return current == State.CANCELLED;
+            }
+        } while (!lifecycle.compareAndSet(current, State.CANCELLED));
+
+        if (structured) {
+            children.forEach(ServiceInvocation::cancel);
+            interruptWorker();
+        }
+
         return true;
     }
 
@@ -910,7 +1896,12 @@ public final class ServiceInvocation<T> implements Worker<T> {
      * @return true or false depending on whether the invocation has been cancelled or not
      */
     public boolean isCancelled() {
-        return cancelled;
+        if (lifecycle.get() == State.CANCELLED) {
+            return true;
+        }
+
+        ServiceInvocation<?> owner = this.owner;
+        return owner != null && owner.isCancelled();
     }
 
     /**
@@ -924,4 +1915,31 @@ public final class ServiceInvocation<T> implements Worker<T> {
 
         Response<T> get() throws Exception;
     }
+
+    /**
+     * A functional supplier interface used for providing the response of a download, see
+     * {@link #download(String, DownloadSupplier, Path)}.
+     */
+    @FunctionalInterface
+    public interface DownloadSupplier {
+
+        /**
+         * Returns the download response.
+         *
+         * @param range the value for the "Range" request header, or null if the whole file is needed
+         * @return the response
+         * @throws Exception if the call fails
+         */
+        Response<ResponseBody> get(String range) throws Exception;
+    }
+
+    /*
+     * A supplier used for service invocations that are composed of other invocations. It receives
+     * the composed invocation so that the individual steps can be bound to it.
+     */
+    @FunctionalInterface
+    private interface PipelineSupplier<T> {
+
+        Response<T> get(ServiceInvocation<T> pipeline) throws Exception;
+    }
 }
@@ -0,0 +1,195 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.ResponseBody;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Describes how a backend should be simulated in order to test the application against
+ * realistic behaviour, e.g. before a release. A profile adds latency, fails calls with
+ * given status codes, throws exceptions, simulates timeouts, and limits the throughput. The
+ * real service still gets invoked for all calls that do not fail (use
+ * {@link SimulationRunner#standIn(Object)} for a local stand-in that does not need a server).
+ * <pre>
+ *         ServiceInvocation.setDefaultSimulationProfile(SimulationProfile.create()
+ *              .withLatency(LatencyDistribution.longTail(80, 1200))
+ *              .withFailure(HttpStatusCode.SERVICE_UNAVAILABLE, 0.02)
+ *              .withTimeout(0.005, 10_000));
+ *     </pre>
+ * A profile can be set globally, for a group of invocations, or for a single invocation.
+ *
+ * @see ServiceInvocation#withSimulationProfile(SimulationProfile)
+ * @see ServiceInvocation#setDefaultSimulationProfile(SimulationProfile)
+ * @see InvocationGroup#withSimulationProfile(SimulationProfile)
+ */
+public final class SimulationProfile {
+
+    private static final Logger LOG = LogManager.getLogger(SimulationProfile.class);
+
+    private final Map<HttpStatusCode, Double> failures = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    private volatile LatencyDistribution latency;
+
+    private volatile double exceptionProbability;
+
+    private volatile double timeoutProbability;
+
+    private volatile long timeout;
+
+    private volatile long throughputInterval;
+
+    private SimulationProfile() {
+    }
+
+    /**
+     * Creates a new profile that does not simulate anything yet.
+     *
+     * @return the profile
+     */
+    public static SimulationProfile create() {
+        return new SimulationProfile();
+    }
+
+    /**
+     * Adds latency to each call.
+     *
+     * @param latency the distribution of the simulated latency
+     * @return the profile
+     */
+    public SimulationProfile withLatency(LatencyDistribution latency) {
+        this.latency = Objects.requireNonNull(latency, "latency distribution can not be null");
+        return this;
+    }
+
+    /**
+     * Makes calls fail with the given status code. Calls that fail this way do not reach
+     * the real service.
+     *
+     * @param code        the status code, must be a client or server error
+     * @param probability the probability between 0 and 1
+     * @return the profile
+     */
+    public SimulationProfile withFailure(HttpStatusCode code, double probability) {
+        Objects.requireNonNull(code, "status code can not be null");
+        if (code.getStatusCode() < 400) {
+            throw new IllegalArgumentException("simulated failures need an error status code but got " + code.getStatusCode());
+        }
+        failures.put(code, checkProbability(probability));
+        return this;
+    }
+
+    /**
+     * Makes calls throw an {@link IOException}.
+     *
+     * @param probability the probability between 0 and 1
+     * @return the profile
+     */
+    public SimulationProfile withExceptionProbability(double probability) {
+        exceptionProbability = checkProbability(probability);
+        return this;
+    }
+
+    /**
+     * Makes calls time out, i.e. they throw a {@link SocketTimeoutException} after the given time.
+     *
+     * @param probability   the probability between 0 and 1
+     * @param timeoutMillis the time after which the call times out in milliseconds
+     * @return the profile
+     */
+    public SimulationProfile withTimeout(double probability, long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout millis can not be negative but was " + timeoutMillis);
+        }
+        timeoutProbability = checkProbability(probability);
+        timeout = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Limits the number of calls per second that the simulated backend can handle. Calls
+     * exceeding the limit have to wait.
+     *
+     * @param callsPerSecond the maximum number of calls per second, zero for no limit
+     * @return the profile
+     */
+    public SimulationProfile withThroughputLimit(double callsPerSecond) {
+        if (callsPerSecond < 0) {
+            throw new IllegalArgumentException("calls per second can not be negative but was " + callsPerSecond);
+        }
+        throughputInterval = callsPerSecond == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / callsPerSecond);
+        return this;
+    }
+
+    private static double checkProbability(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("probability must be between 0 and 1 but was " + probability);
+        }
+        return probability;
+    }
+
+    /*
+     * Invokes the given service with the simulated behaviour of this profile. Runs on the worker thread.
+     */
+    <T> Response<T> invoke(ServiceInvocation.ServiceSupplier<T> service) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        awaitThroughputSlot();
+
+        LatencyDistribution latency = this.latency;
+        if (latency != null) {
+            long millis = latency.nextLatency(random);
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+        }
+
+        if (random.nextDouble() < timeoutProbability) {
+            Thread.sleep(timeout);
+            throw new SocketTimeoutException("Simulated timeout");
+        }
+
+        if (random.nextDouble() < exceptionProbability) {
+            throw new IOException("Simulated exception");
+        }
+
+        /*
+         * Draw the simulated failure before calling the service, this way no real response
+         * (and its pooled connection) gets dropped without being closed.
+         */
+        for (Map.Entry<HttpStatusCode, Double> failure : failures.entrySet()) {
+            if (random.nextDouble() < failure.getValue()) {
+                HttpStatusCode code = failure.getKey();
+                LOG.debug("simulating failure with status code {}", code.getStatusCode());
+                return Response.error(code.getStatusCode(), ResponseBody.create("Simulated failure: " + code.getReasonPhrase(), null));
+            }
+        }
+
+        return service.get();
+    }
+
+    private void awaitThroughputSlot() throws InterruptedException {
+        long interval = throughputInterval;
+        if (interval == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long slot = nextSlot.getAndAccumulate(now, (next, time) -> Math.max(next, time) + interval);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.dlsc.retrofitfx;
+
+import javafx.concurrent.Worker.State;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit2.Response;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Drives a large number of service invocations against a (simulated) backend and reports the
+ * achieved throughput and the latencies, e.g. in order to find out at which load the user
+ * interface starts to degrade. The latency of an invocation is measured from its execution
+ * until all of its handlers have been called, hence it includes the time spent waiting for
+ * the UI thread.
+ * <pre>
+ *         SimulationReport report = SimulationRunner.create(() -> ServiceInvocation.create("Load customers ...", SimulationRunner.standIn(customers))
+ *                      .onSuccess(customers -> listView.getItems().setAll(customers)))
+ *              .withProfile(SimulationProfile.create().withLatency(LatencyDistribution.longTail(50, 800)))
+ *              .withInvocations(10_000)
+ *              .withConcurrency(200)
+ *              .run();
+ *     </pre>
+ * The {@link #run()} method blocks and must not be called on the UI thread.
+ */
+public final class SimulationRunner {
+
+    private static final Logger LOG = LogManager.getLogger(SimulationRunner.class);
+
+    private final Supplier<ServiceInvocation<?>> factory;
+
+    private SimulationProfile profile;
+
+    private UiDispatcher dispatcher;
+
+    private int invocations = 1_000;
+
+    private int concurrency = 50;
+
+    private SimulationRunner(Supplier<ServiceInvocation<?>> factory) {
+        this.factory = Objects.requireNonNull(factory, "invocation factory can not be null");
+    }
+
+    /**
+     * Creates a new runner.
+     *
+     * @param factory the factory creating a new (not yet executed) invocation for each run
+     * @return the runner
+     */
+    public static SimulationRunner create(Supplier<ServiceInvocation<?>> factory) {
+        return new SimulationRunner(factory);
+    }
+
+    /**
+     * Returns a service supplier that acts as a local stand-in for a server. It immediately returns
+     * a successful response with the given body. Combine it with a {@link SimulationProfile}
+     * to simulate latency and failures.
+     *
+     * @param body the body of the response
+     * @param <T>  the type of the body
+     * @return the supplier
+     */
+    public static <T> ServiceInvocation.ServiceSupplier<T> standIn(T body) {
+        return () -> Response.success(body);
+    }
+
+    /**
+     * Sets the profile for all invocations that do not have their own profile.
+     *
+     * @param profile the profile
+     * @return the runner
+     */
+    public SimulationRunner withProfile(SimulationProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Sets the dispatcher for all invocations, e.g. {@link UiDispatcher#direct()} for measuring
+     * the service layer without a user interface. By default, the invocations use their own dispatcher.
+     *
+     * @param dispatcher the dispatcher
+     * @return the runner
+     */
+    public SimulationRunner withDispatcher(UiDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        return this;
+    }
+
+    /**
+     * Sets the total number of invocations to execute.
+     *
+     * @param invocations the number of invocations
+     * @return the runner
+     */
+    public SimulationRunner withInvocations(int invocations) {
+        if (invocations <= 0) {
+            throw new IllegalArgumentException("number of invocations must be positive but was " + invocations);
+        }
+        this.invocations = invocations;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of invocations running at the same time.
+     *
+     * @param concurrency the number of concurrent invocations
+     * @return the runner
+     */
+    public SimulationRunner withConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive but was " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Executes the invocations and waits until all of them are done.
+     *
+     * @return the report
+     * @throws InterruptedException if the calling thread gets interrupted while waiting
+     */
+    public SimulationReport run() throws InterruptedException {
+        LOG.info("starting simulation, invocations = {}, concurrency = {}", invocations, concurrency);
+
+        Semaphore permits = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(invocations);
+        long[] latencies = new long[invocations];
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+
+        long maxFxLatencyBefore = FxQueueMonitor.getMaxLatency();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < invocations; i++) {
+            permits.acquire();
+
+            int index = i;
+            long invocationStart = System.nanoTime();
+
+            // a reused invocation might still report its earlier execution
+            AtomicBoolean counted = new AtomicBoolean();
+
+            try {
+                ServiceInvocation<?> invocation = Objects.requireNonNull(factory.get(), "invocation factory returned null");
+                if (profile != null) {
+                    invocation.applyGroupSimulationProfile(profile);
+                }
+                if (dispatcher != null) {
+                    invocation.withDispatcher(dispatcher);
+                }
+
+                invocation.addListener(new InvocationListener() {
+                    @Override
+                    public void finished(ServiceInvocation<?> invocation, State outcome, Throwable exception) {
+                        if (!counted.compareAndSet(false, true)) {
+                            return;
+                        }
+                        latencies[index] = System.nanoTime() - invocationStart;
+                        switch (outcome) {
+                            case SUCCEEDED -> succeeded.incrementAndGet();
+                            case CANCELLED -> cancelled.incrementAndGet();
+                            default -> failed.incrementAndGet();
+                        }
+                        permits.release();
+                        done.countDown();
+                    }
+                });
+
+                invocation.execute();
+            } catch (Exception e) {
+                LOG.warn("could not execute invocation {} of the simulation", index, e);
+                if (!counted.compareAndSet(false, true)) {
+                    continue;
+                }
+                latencies[index] = System.nanoTime() - invocationStart;
+                failed.incrementAndGet();
+                permits.release();
+                done.countDown();
+            }
+        }
+
+        done.await();
+
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+
+        SimulationReport report = new SimulationReport(invocations, succeeded.get(), failed.get(), cancelled.get(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                invocations / (elapsed / 1_000_000_000d),
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+                TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length - 1]),
+                Math.max(maxFxLatencyBefore, FxQueueMonitor.getMaxLatency()));
+
+        LOG.info("simulation finished: {}", report);
+
+        return report;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    /**
+     * The result of a simulation run. All durations are in milliseconds.
+     *
+     * @param invocations   the number of executed invocations
+     * @param succeeded     the number of successful invocations
+     * @param failed        the number of failed invocations
+     * @param cancelled     the number of cancelled invocations
+     * @param elapsed       the total duration of the run
+     * @param throughput    the number of invocations per second
+     * @param latencyP50    the median latency
+     * @param latencyP90    the 90th percentile of the latency
+     * @param latencyP99    the 99th percentile of the latency
+     * @param latencyMax    the highest latency
+     * @param maxFxLatency  the highest queue latency of the UI thread (see {@link FxQueueMonitor})
+     */
+    public record SimulationReport(int invocations, int succeeded, int failed, int cancelled, long elapsed,
+                                   double throughput, long latencyP50, long latencyP90, long latencyP99,
+                                   long latencyMax, long maxFxLatency) {
+
+        @Override
+        public String toString() {
+            return String.format("%d invocations (%d succeeded, %d failed, %d cancelled) in %dms, %.1f/s, latency p50 = %dms, p90 = %dms, p99 = %dms, max = %dms, max UI queue latency = %dms",
+                    invocations, succeeded, failed, cancelled, elapsed, throughput, latencyP50, latencyP90, latencyP99, latencyMax, maxFxLatency);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dlsc.retrofitfx;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs an action on the UI thread at most once per interval, no matter how often it gets
+ * requested. Requests that arrive while an update is already pending get folded into that update.
+ * This allows worker threads to signal changes at a very high rate without flooding the UI thread.
+ */
+final class Throttle {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RetrofitFX Throttle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final Runnable action;
+
+    private volatile long intervalNanos;
+
+    private volatile long lastRun;
+
+    private volatile UiDispatcher dispatcher;
+
+    Throttle(long intervalMillis, Runnable action) {
+        this.action = Objects.requireNonNull(action, "action can not be null");
+        setInterval(intervalMillis);
+        this.lastRun = System.nanoTime() - intervalNanos;
+    }
+
+    void setInterval(long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("interval millis can not be negative but was " + intervalMillis);
+        }
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /*
+     * Sets the dispatcher used for running the action, null for the default dispatcher of the service invocations.
+     */
+    void setDispatcher(UiDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Requests that the action gets run. Can be called from any thread.
+     */
+    void request() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+
+        long delay = lastRun + intervalNanos - System.nanoTime();
+        if (delay <= 0) {
+            dispatch();
+        } else {
+            SCHEDULER.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void dispatch() {
+        UiDispatcher dispatcher = this.dispatcher;
+        FxQueueMonitor.runLater(dispatcher != null ? dispatcher : ServiceInvocation.getDefaultDispatcher(), this::run);
+    }
+
+    private void run() {
+        /*
+         * Reset the flag before running the action so that changes made while the action
+         * is running will trigger another update.
+         */
+        pending.set(false);
+        lastRun = System.nanoTime();
+        action.run();
+    }
+}
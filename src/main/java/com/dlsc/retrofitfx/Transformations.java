@@ -0,0 +1,114 @@
+package com.dlsc.retrofitfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A collection of functions that can be passed to {@link ServiceInvocation#map(Function)} in
+ * order to process the (large) collections returned by a service on the worker thread. Once a
+ * collection contains at least {@link #DEFAULT_PARALLEL_THRESHOLD} elements (or the explicitly
+ * given threshold) the work will be split up and executed in parallel via the common fork / join pool.
+ * <pre>
+ *         ServiceInvocation.create("Load customers ...", () -> myService.getAllCustomers().execute())
+ *              .map(Transformations.parallelSort(Comparator.comparing(Customer::getName)))
+ *              .map(Transformations.parallelMap(CustomerBean::new))
+ *              .onSuccess(beans -> tableView.getItems().setAll(beans))
+ *              .execute();
+ *     </pre>
+ */
+public final class Transformations {
+
+    /**
+     * The minimum number of elements a collection needs to have before it will be processed in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+    private Transformations() {
+    }
+
+    /**
+     * Returns a function that converts each element of a collection with the given mapper.
+     *
+     * @param mapper the function used for converting a single element
+     * @param <E>    the type of the elements in the collection
+     * @param <R>    the type of the converted elements
+     * @return a function returning a list of converted elements (in the same order)
+     */
+    public static <E, R> Function<Collection<? extends E>, List<R>> parallelMap(Function<? super E, ? extends R> mapper) {
+        return parallelMap(mapper, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Returns a function that converts each element of a collection with the given mapper.
+     *
+     * @param mapper    the function used for converting a single element
+     * @param threshold the minimum size of the collection for parallel processing
+     * @param <E>       the type of the elements in the collection
+     * @param <R>       the type of the converted elements
+     * @return a function returning a list of converted elements (in the same order)
+     */
+    public static <E, R> Function<Collection<? extends E>, List<R>> parallelMap(Function<? super E, ? extends R> mapper, int threshold) {
+        Objects.requireNonNull(mapper, "mapper can not be null");
+        return collection -> stream(collection, threshold).map(mapper).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a function that removes all elements from a collection that do not match the given predicate.
+     *
+     * @param predicate the predicate used for testing the elements
+     * @param <E>       the type of the elements in the collection
+     * @return a function returning a list of the matching elements (in the same order)
+     */
+    public static <E> Function<Collection<? extends E>, List<E>> parallelFilter(Predicate<? super E> predicate) {
+        Objects.requireNonNull(predicate, "predicate can not be null");
+        return collection -> stream(collection, DEFAULT_PARALLEL_THRESHOLD).filter(predicate).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a function that sorts the elements of a collection with the given comparator.
+     *
+     * @param comparator the comparator used for sorting
+     * @param <E>        the type of the elements in the collection
+     * @return a function returning a new, sorted list
+     */
+    public static <E> Function<Collection<? extends E>, List<E>> parallelSort(Comparator<? super E> comparator) {
+        Objects.requireNonNull(comparator, "comparator can not be null");
+        return collection -> {
+            List<E> result = new ArrayList<>(collection);
+            if (result.size() >= DEFAULT_PARALLEL_THRESHOLD) {
+                @SuppressWarnings("unchecked")
+                E[] array = (E[]) result.toArray();
+                Arrays.parallelSort(array, comparator);
+                return new ArrayList<>(Arrays.asList(array));
+            }
+            result.sort(comparator);
+            return result;
+        };
+    }
+
+    /**
+     * Returns a function that groups the elements of a collection by the key returned by the given classifier.
+     *
+     * @param classifier the function returning the group key of an element
+     * @param <E>        the type of the elements in the collection
+     * @param <K>        the type of the group keys
+     * @return a function returning a map of keys and their groups
+     */
+    public static <E, K> Function<Collection<? extends E>, Map<K, List<E>>> parallelGroup(Function<? super E, ? extends K> classifier) {
+        Objects.requireNonNull(classifier, "classifier can not be null");
+        return collection -> stream(collection, DEFAULT_PARALLEL_THRESHOLD).collect(Collectors.groupingBy(classifier, Collectors.toList()));
+    }
+
+    private static <E> Stream<? extends E> stream(Collection<? extends E> collection, int threshold) {
+        return collection.size() >= threshold ? collection.parallelStream() : collection.stream();
+    }
+}
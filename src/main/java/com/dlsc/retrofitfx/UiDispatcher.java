@@ -0,0 +1,59 @@
+package com.dlsc.retrofitfx;
+
+/**
+ * The strategy used by service invocations for handing work over to the UI thread, e.g. for
+ * calling the handlers or updating the properties of the invocation. By default this is the
+ * JavaFX application thread ({@link #fx()}), but headless batch jobs and load tests can
+ * use {@link #direct()} and unit tests / benchmarks can use a {@link ManualUiDispatcher} in
+ * order to control exactly when the work gets done.
+ *
+ * @see ServiceInvocation#setDefaultDispatcher(UiDispatcher)
+ * @see ServiceInvocation#withDispatcher(UiDispatcher)
+ */
+public interface UiDispatcher {
+
+    /**
+     * Schedules the given runnable for execution on the UI thread.
+     *
+     * @param runnable the runnable
+     */
+    void dispatch(Runnable runnable);
+
+    /**
+     * Returns true if the calling thread is the UI thread of this dispatcher. Work that needs to
+     * be done on the UI thread will be executed right away in this case.
+     *
+     * @return true if called on the UI thread
+     */
+    boolean isDispatchThread();
+
+    /**
+     * Returns the dispatcher that uses the JavaFX application thread. This requires a running JavaFX toolkit.
+     *
+     * @return the JavaFX dispatcher
+     */
+    static UiDispatcher fx() {
+        return FxUiDispatcher.INSTANCE;
+    }
+
+    /**
+     * Returns a dispatcher that executes all work directly on the calling (worker) thread. This
+     * dispatcher does not need a JavaFX toolkit and adds no overhead, which makes it suitable
+     * for headless, high-throughput usage.
+     *
+     * @return the direct dispatcher
+     */
+    static UiDispatcher direct() {
+        return DirectUiDispatcher.INSTANCE;
+    }
+
+    /**
+     * Returns a new dispatcher that queues all work until it gets explicitly executed by calling
+     * one of the "run" methods of the returned dispatcher.
+     *
+     * @return a new manual dispatcher
+     */
+    static ManualUiDispatcher manual() {
+        return new ManualUiDispatcher();
+    }
+}
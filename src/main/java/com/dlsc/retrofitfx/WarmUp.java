@@ -0,0 +1,295 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit2.Retrofit;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Performs the expensive one-time initialisations that would otherwise slow down the first service
+ * invocations of the application, ideally while a splash screen is showing. The warm-up runs on a
+ * low priority background thread and has no side effects on the user interface. It
+ * <ul>
+ *     <li>executes a local stand-in invocation, loading and initialising the invocation machinery,</li>
+ *     <li>creates the Retrofit proxies of the given service interfaces and parses their methods returning a {@link retrofit2.Call}, which also creates the converters,</li>
+ *     <li>sends HEAD requests to the base URL of Retrofit and the given hosts, so that the connection pool holds established (TLS) connections.</li>
+ * </ul>
+ * <pre>
+ *         WarmUp.create()
+ *              .withRetrofit(retrofit, CustomerService.class, OrderService.class)
+ *              .withHosts("https://auth.example.com")
+ *              .run()
+ *              .thenAccept(report -&gt; LOG.info("warm-up: {}", report));
+ *     </pre>
+ * Service methods are only parsed, the calls they return are never executed. Methods with other return
+ * types (e.g. {@code CompletableFuture} or Kotlin suspend functions) would send their request right away
+ * and get skipped, use {@code Retrofit.Builder.validateEagerly(true)} for them. Failures of individual
+ * steps are logged and listed in the report but do not fail the warm-up.
+ */
+public final class WarmUp {
+
+    private static final Logger LOG = LogManager.getLogger(WarmUp.class);
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = Map.of(
+            boolean.class, false,
+            byte.class, (byte) 0,
+            short.class, (short) 0,
+            char.class, (char) 0,
+            int.class, 0,
+            long.class, 0L,
+            float.class, 0f,
+            double.class, 0d);
+
+    private Retrofit retrofit;
+
+    private final List<Class<?>> services = new ArrayList<>();
+
+    private final Set<String> hosts = new LinkedHashSet<>();
+
+    private Call.Factory callFactory;
+
+    private WarmUp() {
+    }
+
+    /**
+     * Creates a new warm-up.
+     *
+     * @return the warm-up
+     */
+    public static WarmUp create() {
+        return new WarmUp();
+    }
+
+    /**
+     * Sets the Retrofit instance used by the application. Its base URL will be added to the hosts
+     * and its call factory will be used for opening the connections, unless a different one has
+     * been specified via {@link #withCallFactory(Call.Factory)}.
+     *
+     * @param retrofit the Retrofit instance
+     * @param services the service interfaces whose proxies and methods will be initialised
+     * @return the warm-up
+     */
+    public WarmUp withRetrofit(Retrofit retrofit, Class<?>... services) {
+        this.retrofit = Objects.requireNonNull(retrofit, "retrofit can not be null");
+        this.services.addAll(Arrays.asList(services));
+        return this;
+    }
+
+    /**
+     * Adds hosts to which connections will be opened in advance.
+     *
+     * @param urls the URLs of the hosts
+     * @return the warm-up
+     */
+    public WarmUp withHosts(String... urls) {
+        hosts.addAll(Arrays.asList(urls));
+        return this;
+    }
+
+    /**
+     * Sets the call factory (usually the OkHttpClient of the application) used for opening
+     * the connections. The connections will only be reused by the application if it uses
+     * the same client.
+     *
+     * @param callFactory the call factory
+     * @return the warm-up
+     */
+    public WarmUp withCallFactory(Call.Factory callFactory) {
+        this.callFactory = Objects.requireNonNull(callFactory, "call factory can not be null");
+        return this;
+    }
+
+    /**
+     * Starts the warm-up on a low priority daemon thread.
+     *
+     * @return a future that completes with the report once the warm-up is done
+     */
+    public CompletableFuture<WarmUpReport> run() {
+        CompletableFuture<WarmUpReport> result = new CompletableFuture<>();
+
+        Thread.ofPlatform()
+                .name("RetrofitFX warm-up")
+                .daemon(true)
+                .priority(Thread.MIN_PRIORITY)
+                .start(() -> {
+                    try {
+                        result.complete(doRun());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+
+        return result;
+    }
+
+    private WarmUpReport doRun() {
+        List<String> failures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+
+        warmUpInvocations(failures);
+        long invocationsDone = System.currentTimeMillis();
+
+        int methods = warmUpServices(failures);
+        long servicesDone = System.currentTimeMillis();
+
+        int connections = warmUpConnections(failures);
+        long end = System.currentTimeMillis();
+
+        WarmUpReport report = new WarmUpReport(invocationsDone - start, servicesDone - invocationsDone, methods,
+                end - servicesDone, connections, end - start, List.copyOf(failures));
+
+        LOG.info("warm-up finished: {}", report);
+        return report;
+    }
+
+    private void warmUpInvocations(List<String> failures) {
+        try {
+            ServiceInvocation.create("Warm-up", SimulationRunner.standIn(Boolean.TRUE))
+                    .withDispatcher(UiDispatcher.direct())
+                    .execute()
+                    .join();
+        } catch (Exception e) {
+            failed(failures, "invocation", e);
+        }
+    }
+
+    private int warmUpServices(List<String> failures) {
+        if (retrofit == null) {
+            return 0;
+        }
+
+        int count = 0;
+
+        for (Class<?> service : services) {
+            Object proxy;
+            try {
+                proxy = retrofit.create(service);
+            } catch (Exception e) {
+                failed(failures, service.getName(), e);
+                continue;
+            }
+
+            for (Method method : service.getMethods()) {
+                if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+
+                if (!isCallMethod(method)) {
+                    /*
+                     * Other call adapters (e.g. for CompletableFuture) and Kotlin suspend functions
+                     * execute the call right away, these methods must not be invoked.
+                     */
+                    LOG.debug("skipping method {}.{}, it does not return a call", service.getSimpleName(), method.getName());
+                    continue;
+                }
+
+                try {
+                    // parses the annotations and creates the converters, the returned call does not get executed
+                    method.invoke(proxy, arguments(method));
+                    count++;
+                } catch (InvocationTargetException e) {
+                    failed(failures, service.getSimpleName() + "." + method.getName(), e.getCause());
+                } catch (Exception e) {
+                    failed(failures, service.getSimpleName() + "." + method.getName(), e);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private int warmUpConnections(List<String> failures) {
+        Set<String> urls = new LinkedHashSet<>();
+        if (retrofit != null) {
+            urls.add(retrofit.baseUrl().toString());
+        }
+        urls.addAll(hosts);
+
+        if (urls.isEmpty()) {
+            return 0;
+        }
+
+        Call.Factory factory = callFactory;
+        if (factory == null && retrofit != null) {
+            factory = retrofit.callFactory();
+        }
+
+        if (factory == null) {
+            LOG.warn("no call factory available, can not open connections to {}", urls);
+            return 0;
+        }
+
+        int count = 0;
+
+        for (String url : urls) {
+            Request request = new Request.Builder().url(url).head().build();
+            try (Response response = factory.newCall(request).execute()) {
+                LOG.debug("opened connection to {}, status {}", url, response.code());
+                count++;
+            } catch (Exception e) {
+                failed(failures, url, e);
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean isCallMethod(Method method) {
+        Type type = method.getGenericReturnType();
+        if (type instanceof ParameterizedType parameterizedType) {
+            type = parameterizedType.getRawType();
+        }
+        return type == retrofit2.Call.class;
+    }
+
+    private static Object[] arguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = types[i].isPrimitive() ? PRIMITIVE_DEFAULTS.get(types[i]) : null;
+        }
+        return args;
+    }
+
+    private static void failed(List<String> failures, String step, Throwable t) {
+        LOG.warn("warm-up of {} failed", step, t);
+        failures.add(step + ": " + t);
+    }
+
+    /**
+     * The result of a warm-up. All durations are in milliseconds.
+     *
+     * @param invocations  the time spent initialising the invocation machinery
+     * @param services     the time spent initialising the service proxies
+     * @param methods      the number of service methods that have been initialised
+     * @param connections  the time spent opening connections
+     * @param hosts        the number of hosts that have been contacted successfully
+     * @param total        the total duration of the warm-up
+     * @param failures     the descriptions of the steps that failed
+     */
+    public record WarmUpReport(long invocations, long services, int methods, long connections, int hosts,
+                               long total, List<String> failures) {
+
+        @Override
+        public String toString() {
+            return String.format("%dms total, invocations = %dms, services = %dms (%d methods), connections = %dms (%d hosts), %d failure(s)",
+                    total, invocations, services, methods, connections, hosts, failures.size());
+        }
+    }
+}
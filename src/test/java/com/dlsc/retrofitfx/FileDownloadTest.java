@@ -0,0 +1,149 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Streaming;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileDownloadTest {
+
+    interface DocumentService {
+
+        @Streaming
+        @GET("document")
+        Call<ResponseBody> download(@Header("Range") String range);
+    }
+
+    @TempDir
+    Path directory;
+
+    private MockWebServer server;
+
+    private DocumentService service;
+
+    private Path target;
+
+    private Path part;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = new MockWebServer();
+        server.start();
+
+        service = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .build()
+                .create(DocumentService.class);
+
+        target = directory.resolve("document.txt");
+        part = directory.resolve("document.txt.part");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private CompletableFuture<Path> download(AtomicReference<String> failure) {
+        return ServiceInvocation.download("Download", range -> service.download(range).execute(), target)
+                .withDispatcher(UiDispatcher.direct())
+                .onFailure((name, error) -> failure.set(error))
+                .execute();
+    }
+
+    @Test
+    public void downloadsIntoTargetFile() throws Exception {
+        server.enqueue(new MockResponse().setBody("hello world"));
+
+        assertEquals(target, download(new AtomicReference<>()).get(5, TimeUnit.SECONDS));
+
+        assertEquals("hello world", Files.readString(target));
+        assertFalse(Files.exists(part));
+        assertNull(server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void resumesPartialDownload() throws Exception {
+        Files.writeString(part, "hello ");
+        server.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 6-10/11")
+                .setBody("world"));
+
+        assertEquals(target, download(new AtomicReference<>()).get(5, TimeUnit.SECONDS));
+
+        assertEquals("hello world", Files.readString(target));
+        assertFalse(Files.exists(part));
+        assertEquals("bytes=6-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void restartsIfServerIgnoresRange() throws Exception {
+        Files.writeString(part, "stale data");
+        server.enqueue(new MockResponse().setBody("hello world"));
+
+        assertEquals(target, download(new AtomicReference<>()).get(5, TimeUnit.SECONDS));
+
+        assertEquals("hello world", Files.readString(target));
+        assertEquals("bytes=10-", server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void deletesPartialFileIfRangeNotSatisfiable() throws Exception {
+        Files.writeString(part, "hello world, but longer than the document");
+        server.enqueue(new MockResponse().setResponseCode(416).setBody("range not satisfiable"));
+
+        AtomicReference<String> failure = new AtomicReference<>();
+        assertNull(download(failure).get(5, TimeUnit.SECONDS));
+
+        assertEquals("range not satisfiable", failure.get());
+        assertFalse(Files.exists(part));
+        assertFalse(Files.exists(target));
+
+        // the next attempt starts from scratch
+        server.takeRequest();
+        server.enqueue(new MockResponse().setBody("hello world"));
+
+        assertEquals(target, download(new AtomicReference<>()).get(5, TimeUnit.SECONDS));
+        assertEquals("hello world", Files.readString(target));
+        assertNull(server.takeRequest().getHeader("Range"));
+    }
+
+    @Test
+    public void rejectsResponseResumingAtWrongPosition() throws Exception {
+        Files.writeString(part, "hello ");
+        server.enqueue(new MockResponse()
+                .setResponseCode(206)
+                .setHeader("Content-Range", "bytes 0-10/11")
+                .setBody("hello world"));
+
+        Throwable exception = download(new AtomicReference<>()).handle((path, ex) -> ex).get(5, TimeUnit.SECONDS);
+
+        assertInstanceOf(IOException.class, exception);
+        assertTrue(Files.exists(part));
+        assertEquals("hello ", Files.readString(part));
+        assertFalse(Files.exists(target));
+    }
+}
@@ -0,0 +1,140 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HedgingTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    // the losing request only returns once the test releases it, after the winner has been delivered
+    private final CountDownLatch releaseLoser = new CountDownLatch(1);
+
+    private final AtomicBoolean loserClosed = new AtomicBoolean();
+
+    private final String key = "hedging-test-" + UUID.randomUUID();
+
+    // hedge after 50ms, the tracker already knows one (fast) latency
+    private HedgingPolicy createPolicy() {
+        LatencyTracker.forName(key).record(TimeUnit.MILLISECONDS.toNanos(1));
+        return HedgingPolicy.create().withKey(key).withMinSamples(1).withMinDelay(50);
+    }
+
+    @Test
+    public void hedgeWinsWhenFirstRequestIsSlow() throws Exception {
+        ServiceInvocation<String> invocation = ServiceInvocation.create("Hedged", () -> {
+                    if (calls.incrementAndGet() == 1) {
+                        awaitUninterruptibly(releaseLoser);
+                        return Response.error(500, trackedBody());
+                    }
+                    return Response.success("hedge");
+                })
+                .withHedging(createPolicy())
+                .withDispatcher(UiDispatcher.direct());
+
+        assertEquals("hedge", invocation.execute().get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+
+        releaseLoser.countDown();
+        waitUntil(loserClosed::get);
+
+        // only the winning attempt gets recorded
+        waitUntil(() -> LatencyTracker.forName(key).getSampleCount() == 2);
+    }
+
+    @Test
+    public void firstRequestWinsAndLosingHedgeIsDiscarded() throws Exception {
+        CountDownLatch hedgeSent = new CountDownLatch(1);
+
+        ServiceInvocation<String> invocation = ServiceInvocation.create("Hedged", () -> {
+                    if (calls.incrementAndGet() == 1) {
+                        awaitUninterruptibly(hedgeSent);
+                        return Response.success("first");
+                    }
+                    hedgeSent.countDown();
+                    awaitUninterruptibly(releaseLoser);
+                    return Response.error(500, trackedBody());
+                })
+                .withHedging(createPolicy())
+                .withDispatcher(UiDispatcher.direct());
+
+        assertEquals("first", invocation.execute().get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+
+        releaseLoser.countDown();
+        waitUntil(loserClosed::get);
+        waitUntil(() -> LatencyTracker.forName(key).getSampleCount() == 2);
+    }
+
+    @Test
+    public void hedgeIsSkippedWithoutPermit() throws Exception {
+        RateLimiter limiter = RateLimiter.create(1, 1);
+
+        ServiceInvocation<String> invocation = ServiceInvocation.create("Hedged", () -> {
+                    calls.incrementAndGet();
+                    Thread.sleep(200);
+                    return Response.success("first");
+                })
+                .withHedging(createPolicy())
+                .withRateLimiter(limiter)
+                .withDispatcher(UiDispatcher.direct());
+
+        assertEquals("first", invocation.execute().get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, limiter.getAcquiredCount());
+        assertEquals(0, limiter.getRejectedCount());
+    }
+
+    private ResponseBody trackedBody() {
+        Source source = new ForwardingSource(new Buffer().writeUtf8("loser")) {
+            @Override
+            public void close() throws IOException {
+                loserClosed.set(true);
+                super.close();
+            }
+        };
+        return ResponseBody.create(Okio.buffer(source), null, 5);
+    }
+
+    // the losing request gets interrupted, it must still deliver its response in order to test the discarding
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 5 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.dlsc.retrofitfx;
+
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InvocationGroupTest {
+
+    private static ServiceInvocation<String> createInvocation(String value) {
+        return ServiceInvocation.create("Load " + value, () -> Response.success(value))
+                .withDispatcher(UiDispatcher.direct());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 5 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void countsOnlyExecutedInvocations() throws Exception {
+        InvocationGroup group = InvocationGroup.create("Test").withDispatcher(UiDispatcher.direct());
+
+        ServiceInvocation<String> executed = group.add(createInvocation("a"));
+        group.add(createInvocation("b"));
+
+        executed.execute().get(5, TimeUnit.SECONDS);
+        waitUntil(() -> group.getFinishedCount() == 1);
+
+        assertEquals(1, group.getExecutedCount());
+        assertEquals(0, group.getRunningCount());
+        assertEquals(1, group.getInvocations().size());
+    }
+
+    @Test
+    public void cancelCancelsInvocationsThatHaveNotBeenExecuted() throws Exception {
+        InvocationGroup group = InvocationGroup.create("Test").withDispatcher(UiDispatcher.direct());
+
+        ServiceInvocation<String> pending = group.add(createInvocation("a"));
+        group.cancel();
+
+        assertTrue(pending.isCancelled());
+
+        pending.execute().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, group.getExecutedCount());
+        assertEquals(1, group.getFinishedCount());
+        assertTrue(group.getInvocations().isEmpty());
+    }
+}
@@ -0,0 +1,96 @@
+package com.dlsc.retrofitfx;
+
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MutationQueueTest {
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    // every write waits for a permit, this way the tests control when a write completes
+    private final Semaphore gate = new Semaphore(0);
+
+    private MutationQueue<String, String, String> createQueue() {
+        return MutationQueue.create(value -> ServiceInvocation.create("Save " + value, () -> {
+                    gate.acquire();
+                    written.add(value);
+                    return Response.success(value);
+                })
+                .withDispatcher(UiDispatcher.direct()));
+    }
+
+    @Test
+    public void coalescesPendingWrites() throws Exception {
+        MutationQueue<String, String, String> queue = createQueue();
+
+        CompletableFuture<String> first = queue.submit("customer", "a");
+        CompletableFuture<String> second = queue.submit("customer", "b");
+        CompletableFuture<String> third = queue.submit("customer", "c");
+
+        gate.release(10);
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("c", second.get(5, TimeUnit.SECONDS));
+        assertEquals("c", third.get(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("a", "c"), written);
+        assertEquals(2, queue.getWriteCount());
+        assertEquals(1, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void mergesPendingWrites() throws Exception {
+        MutationQueue<String, String, String> queue = createQueue().withMerge((older, newer) -> older + newer);
+
+        CompletableFuture<String> first = queue.submit("customer", "a");
+        queue.submit("customer", "b");
+        CompletableFuture<String> last = queue.submit("customer", "c");
+
+        gate.release(10);
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("bc", last.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "bc"), written);
+    }
+
+    @Test
+    public void writesDifferentKeysIndependently() throws Exception {
+        MutationQueue<String, String, String> queue = createQueue();
+
+        CompletableFuture<String> first = queue.submit("customer-1", "a");
+        CompletableFuture<String> second = queue.submit("customer-2", "b");
+
+        assertEquals(2, queue.getInFlightCount());
+
+        gate.release(10);
+
+        assertEquals("a", first.get(5, TimeUnit.SECONDS));
+        assertEquals("b", second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, queue.getWriteCount());
+        assertEquals(0, queue.getCoalescedCount());
+    }
+
+    @Test
+    public void releasesKeyWhenIdle() throws Exception {
+        MutationQueue<String, String, String> queue = createQueue();
+
+        gate.release(10);
+        queue.submit("customer", "a").get(5, TimeUnit.SECONDS);
+
+        // the key gets released right after the future has been completed
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queue.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, queue.getInFlightCount());
+    }
+}
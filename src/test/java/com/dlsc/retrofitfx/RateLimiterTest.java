@@ -0,0 +1,95 @@
+package com.dlsc.retrofitfx;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    @Test
+    public void burstIsAvailableImmediately() throws Exception {
+        RateLimiter limiter = RateLimiter.create(1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire());
+        }
+
+        assertEquals(3, limiter.getAcquiredCount());
+        assertEquals(0, limiter.getWaitCount());
+    }
+
+    @Test
+    public void waitsForNextPermit() throws Exception {
+        RateLimiter limiter = RateLimiter.create(10, 1);
+
+        assertEquals(0, limiter.acquire());
+
+        long start = System.nanoTime();
+        long waited = limiter.acquire();
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+        // one permit every 100ms
+        assertTrue(waited > 50 && waited <= 100, "waited " + waited + "ms");
+        assertTrue(elapsed >= waited, "elapsed " + elapsed + "ms");
+        assertEquals(1, limiter.getWaitCount());
+        assertEquals(0, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void rejectsInRejectMode() throws Exception {
+        RateLimiter limiter = RateLimiter.create(1, 1).withMode(RateLimiter.Mode.REJECT);
+
+        limiter.acquire();
+
+        assertThrows(RejectedExecutionException.class, limiter::acquire);
+        assertEquals(1, limiter.getAcquiredCount());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void rejectsCallsWaitingLongerThanMaxWait() throws Exception {
+        RateLimiter limiter = RateLimiter.create(1, 1).withMaxWait(100);
+
+        limiter.acquire();
+
+        // the next permit would only be available after one second
+        assertThrows(RejectedExecutionException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void pausesAfterTooManyRequests() throws Exception {
+        RateLimiter limiter = RateLimiter.create(100, 10).withMode(RateLimiter.Mode.REJECT);
+
+        limiter.update(Response.error(429, ResponseBody.create("", MediaType.get("text/plain"))));
+
+        assertThrows(RejectedExecutionException.class, limiter::acquire);
+    }
+
+    @Test
+    public void pausesForRetryAfterHeader() throws Exception {
+        RateLimiter limiter = RateLimiter.create(100, 10).withMaxWait(5_000);
+
+        okhttp3.Response raw = new okhttp3.Response.Builder()
+                .request(new Request.Builder().url("http://localhost/").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .message("Service Unavailable")
+                .header("Retry-After", "1")
+                .build();
+
+        limiter.update(Response.error(ResponseBody.create("", MediaType.get("text/plain")), raw));
+
+        long waited = limiter.acquire();
+        assertTrue(waited > 500, "waited " + waited + "ms");
+    }
+}
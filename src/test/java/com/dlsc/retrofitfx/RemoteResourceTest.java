@@ -0,0 +1,132 @@
+package com.dlsc.retrofitfx;
+
+import javafx.beans.value.ChangeListener;
+import javafx.concurrent.Worker.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RemoteResourceTest {
+
+    private ManualUiDispatcher dispatcher;
+
+    private final List<ServiceInvocation<String>> invocations = new CopyOnWriteArrayList<>();
+
+    private final List<String> changes = new CopyOnWriteArrayList<>();
+
+    private final ChangeListener<String> listener = (obs, oldValue, newValue) -> changes.add(newValue);
+
+    // every load waits for this latch, released right away unless a test needs a slow load
+    private CountDownLatch backend = new CountDownLatch(0);
+
+    @BeforeEach
+    public void setup() {
+        dispatcher = UiDispatcher.manual();
+    }
+
+    private RemoteResource<String> createResource() {
+        return RemoteResource.create(() -> {
+            ServiceInvocation<String> invocation = ServiceInvocation.create("Load value", () -> {
+                        backend.await();
+                        return Response.success("value " + invocations.size());
+                    })
+                    .withDispatcher(dispatcher);
+            invocations.add(invocation);
+            return invocation;
+        });
+    }
+
+    @Test
+    public void loadsWhenFirstListenerGetsAdded() throws Exception {
+        RemoteResource<String> resource = createResource();
+
+        assertNull(resource.getValue());
+        assertTrue(invocations.isEmpty());
+
+        resource.addListener(listener);
+
+        assertEquals(1, invocations.size());
+        assertTrue(resource.isLoading());
+
+        pumpUntil(() -> !changes.isEmpty());
+
+        assertEquals(List.of("value 1"), changes);
+        assertEquals("value 1", resource.getValue());
+        assertFalse(resource.isLoading());
+        assertFalse(resource.isStale());
+
+        // further observers share the loaded value
+        resource.addListener((obs, oldValue, newValue) -> {
+        });
+        assertEquals(1, invocations.size());
+    }
+
+    @Test
+    public void cancelsLoadWhenLastListenerGetsRemoved() throws Exception {
+        backend = new CountDownLatch(1);
+        RemoteResource<String> resource = createResource();
+
+        ChangeListener<String> other = (obs, oldValue, newValue) -> changes.add(newValue);
+        resource.addListener(listener);
+        resource.addListener(other);
+
+        ServiceInvocation<String> invocation = invocations.get(0);
+
+        resource.removeListener(listener);
+        assertFalse(invocation.isCancelled());
+        assertTrue(resource.isLoading());
+
+        resource.removeListener(other);
+        assertTrue(invocation.isCancelled());
+        assertFalse(resource.isLoading());
+        assertFalse(resource.isObserved());
+
+        // a late result of the cancelled invocation must not be delivered
+        backend.countDown();
+        pumpUntil(() -> invocation.getState() == State.CANCELLED);
+        dispatcher.runPending();
+
+        assertTrue(changes.isEmpty());
+        assertTrue(resource.isStale());
+    }
+
+    @Test
+    public void releasesValueWhenLastListenerGetsRemoved() throws Exception {
+        RemoteResource<String> resource = createResource();
+
+        resource.addListener(listener);
+        pumpUntil(() -> !changes.isEmpty());
+
+        resource.removeListener(listener);
+
+        assertTrue(resource.isStale());
+        assertNull(resource.getValue());
+        assertEquals(1, invocations.size());
+
+        // the next observer triggers a new load
+        resource.addListener(listener);
+        pumpUntil(() -> changes.size() == 2);
+
+        assertEquals(2, invocations.size());
+        assertEquals("value 2", resource.getValue());
+    }
+
+    private void pumpUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for the resource");
+            dispatcher.runNext(10);
+        }
+    }
+}
@@ -1,10 +1,256 @@
 package com.dlsc.retrofitfx;
 
+import javafx.concurrent.Worker.State;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class ServiceInvocationTest {
 
-    private ServiceInvocation serviceInvocation;
+    private ManualUiDispatcher dispatcher;
+
+    private final AtomicInteger successCount = new AtomicInteger();
+    private final AtomicInteger exceptionCount = new AtomicInteger();
+    private final AtomicInteger cancelledCount = new AtomicInteger();
+    private final AtomicInteger finallyCount = new AtomicInteger();
 
+    @BeforeEach
     public void setup() {
+        dispatcher = UiDispatcher.manual();
+    }
+
+    private <T> ServiceInvocation<T> create(ServiceInvocation.ServiceSupplier<T> supplier) {
+        return ServiceInvocation.create("Test", supplier)
+                .withDispatcher(dispatcher)
+                .onSuccess(result -> successCount.incrementAndGet())
+                .onException((name, ex) -> exceptionCount.incrementAndGet())
+                .onCancelled((name, msg) -> cancelledCount.incrementAndGet())
+                .onFinally(finallyCount::incrementAndGet);
+    }
+
+    @Test
+    public void succeeds() throws Exception {
+        ServiceInvocation<String> invocation = create(() -> Response.success("ok"));
+
+        CompletableFuture<String> result = invocation.execute();
+        pumpUntil(result::isDone);
+
+        assertEquals("ok", result.get());
+        assertEquals(State.SUCCEEDED, invocation.getState());
+        assertEquals(1, successCount.get());
+        assertEquals(0, exceptionCount.get());
+        assertEquals(0, cancelledCount.get());
+    }
+
+    @Test
+    public void cancelAfterSuccessHasNoEffect() throws Exception {
+        ServiceInvocation<String> invocation = create(() -> Response.success("ok"));
+
+        CompletableFuture<String> result = invocation.execute();
+
+        // the outcome has been committed once the success handler runs
+        pumpUntil(() -> successCount.get() > 0);
+        assertFalse(invocation.cancel());
+
+        pumpUntil(() -> result.isDone() && finallyCount.get() > 0);
+        dispatcher.runPending();
+
+        assertEquals("ok", result.get());
+        assertEquals(State.SUCCEEDED, invocation.getState());
+        assertFalse(invocation.isCancelled());
+        assertEquals(1, successCount.get());
+        assertEquals(0, cancelledCount.get());
+        assertEquals(0, exceptionCount.get());
+    }
+
+    @Test
+    public void cancelWhileCallingServiceRunsOnlyCancelHandlers() throws Exception {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ServiceInvocation<String> invocation = create(() -> {
+            called.countDown();
+            release.await();
+            return Response.success("ok");
+        });
+
+        CompletableFuture<String> result = invocation.execute();
+        assertTrue(called.await(5, TimeUnit.SECONDS));
+
+        assertTrue(invocation.cancel());
+        release.countDown();
+
+        pumpUntil(() -> result.isDone() && cancelledCount.get() > 0);
+        dispatcher.runPending();
+
+        assertNull(result.get());
+        assertEquals(State.CANCELLED, invocation.getState());
+        assertEquals(1, cancelledCount.get());
+        assertEquals(0, successCount.get());
+        assertEquals(0, exceptionCount.get());
+        assertEquals(0, finallyCount.get());
+    }
+
+    @Test
+    public void throwingSuccessHandlerDoesNotTriggerExceptionHandlers() throws Exception {
+        ServiceInvocation<String> invocation = create(() -> Response.success("ok"))
+                .onSuccess(result -> {
+                    successCount.incrementAndGet();
+                    throw new IllegalStateException("handler failed");
+                });
+
+        CompletableFuture<String> result = invocation.execute();
+        pumpUntil(() -> result.isDone() && finallyCount.get() > 0);
+        dispatcher.runPending();
+
+        assertEquals("ok", result.get());
+        assertEquals(State.SUCCEEDED, invocation.getState());
+        assertEquals(1, successCount.get());
+        assertEquals(0, exceptionCount.get());
+        assertEquals(0, cancelledCount.get());
+    }
+
+    @Test
+    public void cancellationExceptionOfSupplierIsAFailure() throws Exception {
+        ServiceInvocation<String> invocation = create(() -> {
+            throw new CancellationException("thrown by the service");
+        });
+
+        CompletableFuture<String> result = invocation.execute();
+        pumpUntil(result::isDone);
+        dispatcher.runPending();
+
+        assertTrue(result.isCompletedExceptionally());
+        assertInstanceOf(CancellationException.class, result.handle((value, exception) -> exception).get());
+        assertEquals(State.FAILED, invocation.getState());
+        assertFalse(invocation.isCancelled());
+        assertEquals(1, exceptionCount.get());
+        assertEquals(0, cancelledCount.get());
+    }
+
+    @Test
+    public void executingTwiceFails() throws Exception {
+        ServiceInvocation<String> invocation = create(() -> Response.success("ok"));
+
+        CompletableFuture<String> result = invocation.execute();
+        assertThrows(IllegalStateException.class, invocation::execute);
+
+        pumpUntil(result::isDone);
+        assertEquals(1, successCount.get());
+    }
+
+    @Test
+    public void pipelineStepDelayIsApplied() throws Exception {
+        ServiceInvocation<String> pipeline = ServiceInvocation.create("Load", () -> Response.success("a"))
+                .withDelay(200)
+                .map(String::toUpperCase)
+                .withDispatcher(dispatcher);
+
+        long startTime = System.nanoTime();
+        CompletableFuture<String> result = pipeline.execute();
+        pumpUntil(result::isDone);
+
+        assertEquals("A", result.get());
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void pipelineStepSimulatingFailureFailsThePipeline() throws Exception {
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        ServiceInvocation<String> pipeline = ServiceInvocation.create("Load", () -> Response.success("a"))
+                .thenInvoke(a -> ServiceInvocation.create("Load next", () -> Response.success(a + "b")).withSimulatingFailure(true))
+                .withDispatcher(dispatcher)
+                .onSuccess(result -> successCount.incrementAndGet())
+                .onFailure((name, error) -> failure.set(error));
+
+        CompletableFuture<String> result = pipeline.execute();
+        pumpUntil(() -> result.isDone() && failure.get() != null);
+
+        assertNull(result.get());
+        assertEquals(State.FAILED, pipeline.getState());
+        assertEquals("Simulated failure", failure.get());
+        assertEquals(0, successCount.get());
+    }
+
+    @Test
+    public void combineFailsFastWhenOtherStepFails() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        ServiceInvocation<String> slow = ServiceInvocation.create("Slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            return Response.success("slow");
+        });
+
+        ServiceInvocation<String> failing = ServiceInvocation.create("Failing", () -> {
+            throw new IOException("backend not reachable");
+        });
+
+        ServiceInvocation<String> combined = slow.thenCombine(failing, (a, b) -> a + b)
+                .withDispatcher(dispatcher)
+                .onException((name, ex) -> exceptionCount.incrementAndGet());
+
+        // the slow step never gets released, the combination has to fail without waiting for it
+        CompletableFuture<String> result = combined.execute();
+        pumpUntil(() -> result.isDone() && exceptionCount.get() > 0);
+
+        assertEquals(State.FAILED, combined.getState());
+        assertTrue(slow.isCancelled());
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void combineFailsFastWhenFirstStepIsNotSuccessful() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        ServiceInvocation<String> notFound = ServiceInvocation.create("Not found", () -> Response.error(404, ResponseBody.create("missing", null)));
+        ServiceInvocation<String> slow = ServiceInvocation.create("Slow", () -> {
+            release.await();
+            return Response.success("slow");
+        });
+
+        ServiceInvocation<String> combined = notFound.thenCombine(slow, (a, b) -> a + b)
+                .withDispatcher(dispatcher)
+                .onFailure((name, error) -> failure.set(error));
+
+        CompletableFuture<String> result = combined.execute();
+        pumpUntil(() -> result.isDone() && failure.get() != null);
+
+        assertEquals(State.FAILED, combined.getState());
+        assertEquals("missing", failure.get());
+        assertTrue(slow.isCancelled());
+    }
 
+    private void pumpUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the invocation");
+            dispatcher.runNext(10);
+        }
     }
 }